@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.handmark.pulltorefresh.core.OverscrollMath;
+
+/**
+ * The decision made by <code>OverscrollHelper.overScrollBy()</code> for each
+ * overscroll callback of a fling, sweeping from past the start to past the end
+ * of a WebView-like scroll range (with fuzziness).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverscrollBenchmark {
+
+	static final int SCROLL_RANGE = 4000;
+	static final int FUZZY_THRESHOLD = 2;
+	static final float SCALE_FACTOR = 1.5f;
+	static final int OVERSCROLL = 200;
+
+	private int mScrollValue;
+	private int mDelta;
+
+	@Setup
+	public void setup() {
+		mScrollValue = -OVERSCROLL;
+		mDelta = 37;
+	}
+
+	@Benchmark
+	public void overScrollBy(Blackhole bh) {
+		mScrollValue += mDelta;
+		if (mScrollValue > SCROLL_RANGE + OVERSCROLL || mScrollValue < -OVERSCROLL) {
+			mDelta = -mDelta;
+		}
+
+		final int newScrollValue = mScrollValue + mDelta;
+		switch (OverscrollMath.resolveAction(newScrollValue, SCROLL_RANGE, FUZZY_THRESHOLD)) {
+			case OverscrollMath.ACTION_OVERSCROLL_START:
+				bh.consume(OverscrollMath.computeStartScroll(SCALE_FACTOR, 0, newScrollValue));
+				break;
+			case OverscrollMath.ACTION_OVERSCROLL_END:
+				bh.consume(OverscrollMath.computeEndScroll(SCALE_FACTOR, 0, newScrollValue, SCROLL_RANGE));
+				break;
+			default:
+				bh.consume(newScrollValue);
+				break;
+		}
+	}
+
+}
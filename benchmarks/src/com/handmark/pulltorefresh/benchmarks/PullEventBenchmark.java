@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.handmark.pulltorefresh.core.GestureMath;
+import com.handmark.pulltorefresh.core.PullStateMachine;
+
+/**
+ * The work done for each MOVE event of a pull: the slop/direction check which
+ * starts the drag, then the friction, scale and threshold transitions which
+ * run while dragging. The motion sweeps back and forth over the threshold so
+ * that the state transitions are exercised.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PullEventBenchmark {
+
+	static final int TOUCH_SLOP = 16;
+	static final int HEADER_SIZE = 180;
+	static final int MAX_PULL = 3 * HEADER_SIZE * 2;
+
+	private float mInitialMotionY;
+	private float mLastMotionY;
+	private float mStep;
+	private int mState;
+
+	@Setup
+	public void setup() {
+		mInitialMotionY = 100f;
+		mLastMotionY = mInitialMotionY;
+		mStep = 7.5f;
+		mState = PullStateMachine.STATE_RESET;
+	}
+
+	@Benchmark
+	public int dragDirection() {
+		nextMove();
+		return GestureMath.getDragDirection(mLastMotionY - mInitialMotionY, 3f, TOUCH_SLOP, true);
+	}
+
+	@Benchmark
+	public void pullEvent(Blackhole bh) {
+		nextMove();
+
+		final int scrollValue = GestureMath.computePullScroll(mInitialMotionY, mLastMotionY, false,
+				GestureMath.DEFAULT_FRICTION);
+		bh.consume(GestureMath.computePullScale(scrollValue, HEADER_SIZE));
+		mState = PullStateMachine.resolvePullState(mState, scrollValue, HEADER_SIZE);
+		bh.consume(mState);
+	}
+
+	private void nextMove() {
+		mLastMotionY += mStep;
+		if (mLastMotionY - mInitialMotionY > MAX_PULL || mLastMotionY < mInitialMotionY) {
+			mStep = -mStep;
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.handmark.pulltorefresh.core.SmoothScrollMath;
+
+/**
+ * A single step of <code>SmoothScrollRunnable</code>, using the default
+ * (decelerate) interpolation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmoothScrollBenchmark {
+
+	static final long DURATION_MS = 325;
+	static final int FROM_VALUE = -540;
+	static final int TO_VALUE = -180;
+
+	private long mElapsed;
+
+	@Setup
+	public void setup() {
+		mElapsed = 0;
+	}
+
+	@Benchmark
+	public int smoothScrollStep() {
+		// Step through the scroll at roughly 60fps, then start again
+		mElapsed = (mElapsed + 16) % (DURATION_MS + 16);
+
+		final long normalizedTime = SmoothScrollMath.computeNormalizedTime(mElapsed, DURATION_MS);
+		final float input = SmoothScrollMath.toInterpolatorInput(normalizedTime);
+
+		// The same curve as DecelerateInterpolator, with the default factor
+		final float interpolation = 1f - (1f - input) * (1f - input);
+		return SmoothScrollMath.computeScrollValue(FROM_VALUE, TO_VALUE, interpolation);
+	}
+
+}
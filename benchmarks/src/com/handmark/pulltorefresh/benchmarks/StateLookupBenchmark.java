@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.handmark.pulltorefresh.core.PullStateMachine;
+
+/**
+ * The int to enum lookups used when restoring state and inflating from XML.
+ * <code>PullToRefreshBase.State</code> and <code>Mode</code> are Android
+ * classes, so these mirror them. Compares iterating over
+ * <code>values()</code>, which allocates a copy of the array on every call,
+ * with iterating over a cached copy (which is what the library now does).
+ * Run with <code>-prof gc</code> to see the difference in allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateLookupBenchmark {
+
+	enum PullState {
+		RESET(PullStateMachine.STATE_RESET),
+		PULL_TO_REFRESH(PullStateMachine.STATE_PULL_TO_REFRESH),
+		RELEASE_TO_REFRESH(PullStateMachine.STATE_RELEASE_TO_REFRESH),
+		REFRESHING(PullStateMachine.STATE_REFRESHING),
+		MANUAL_REFRESHING(PullStateMachine.STATE_MANUAL_REFRESHING),
+		OVERSCROLLING(PullStateMachine.STATE_OVERSCROLLING);
+
+		private static final PullState[] VALUES = values();
+
+		static PullState mapIntToValueUncached(final int stateInt) {
+			for (PullState value : PullState.values()) {
+				if (stateInt == value.mIntValue) {
+					return value;
+				}
+			}
+			return RESET;
+		}
+
+		static PullState mapIntToValue(final int stateInt) {
+			for (PullState value : VALUES) {
+				if (stateInt == value.mIntValue) {
+					return value;
+				}
+			}
+			return RESET;
+		}
+
+		private final int mIntValue;
+
+		PullState(int intValue) {
+			mIntValue = intValue;
+		}
+	}
+
+	static final int[] LOOKUPS = { PullStateMachine.STATE_RESET, PullStateMachine.STATE_PULL_TO_REFRESH,
+			PullStateMachine.STATE_RELEASE_TO_REFRESH, PullStateMachine.STATE_REFRESHING,
+			PullStateMachine.STATE_OVERSCROLLING };
+
+	private int mIndex;
+
+	@Benchmark
+	public PullState mapIntToValueUncached() {
+		return PullState.mapIntToValueUncached(nextLookup());
+	}
+
+	@Benchmark
+	public PullState mapIntToValue() {
+		return PullState.mapIntToValue(nextLookup());
+	}
+
+	private int nextLookup() {
+		mIndex = (mIndex + 1) % LOOKUPS.length;
+		return LOOKUPS[mIndex];
+	}
+
+}
@@ -15,34 +15,228 @@
  *******************************************************************************/
 package com.handmark.pulltorefresh.extras.listfragment;
 
+import java.util.UUID;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.support.v4.app.ListFragment;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.animation.AnimationUtils;
 import android.widget.AbsListView;
-import android.widget.ListView;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.ListAdapter;
+import android.widget.ProgressBar;
+import android.widget.TextView;
 
+import com.handmark.pulltorefresh.extras.listfragment.RefreshHostFragment.RefreshTask;
 import com.handmark.pulltorefresh.library.PullToRefreshBase;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.OnRefreshRestoredListener;
 
 abstract class PullToRefreshBaseListFragment<T extends PullToRefreshBase<? extends AbsListView>> extends ListFragment {
 
+	static final String REFRESH_HOST_TAG_PREFIX = "ptr_refresh_host:";
+	static final String STATE_REFRESH_HOST_TAG = "ptr_refresh_host_tag";
+
 	private T mPullToRefreshListView;
+	private RefreshHostFragment mRefreshHost;
+
+	/**
+	 * Unique to this Fragment, and kept across saved state, so that it finds
+	 * the same host when it is recreated.
+	 */
+	private String mRefreshHostTag;
+
+	/**
+	 * ListFragment can only find its own internal Views, so we show the
+	 * progress and empty text with ours.
+	 */
+	private View mProgressContainer;
+	private View mListContainer;
+	private TextView mEmptyView;
+	private boolean mEmptyViewSet;
+	private boolean mListShown;
+
+	/**
+	 * Builds the same hierarchy as ListFragment, but with the
+	 * {@link PullToRefreshBase} in place of the ListView, so that a ListView
+	 * isn't created just to be thrown away. The Refreshable View has the ID
+	 * <code>android.R.id.list</code>, so ListFragment still works as normal.
+	 * The progress and empty text Views are handled here, as ListFragment's
+	 * IDs for them are private.
+	 * <p/>
+	 * For a refresh started with {@link #startRefresh(RefreshTask)} to be
+	 * restored after the Activity is recreated, the PullToRefresh View needs
+	 * an ID (e.g. <code>R.id.pull_to_refresh_list</code>), so that its state
+	 * is saved. Give it one in
+	 * {@link #onCreatePullToRefreshListView(LayoutInflater, Bundle)}.
+	 */
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+
+		if (null != savedInstanceState) {
+			mRefreshHostTag = savedInstanceState.getString(STATE_REFRESH_HOST_TAG);
+		}
+		if (null == mRefreshHostTag) {
+			mRefreshHostTag = REFRESH_HOST_TAG_PREFIX + UUID.randomUUID();
+		}
+	}
+
+	@Override
+	public void onSaveInstanceState(Bundle outState) {
+		super.onSaveInstanceState(outState);
+		outState.putString(STATE_REFRESH_HOST_TAG, mRefreshHostTag);
+	}
 
 	@Override
 	public final View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-		View layout = super.onCreateView(inflater, container, savedInstanceState);
+		final Context context = getActivity();
+		final FrameLayout root = new FrameLayout(context);
+
+		// Progress container, shown while the list is hidden
+		LinearLayout progressContainer = new LinearLayout(context);
+		progressContainer.setId(R.id.ptr_internal_progress_container);
+		progressContainer.setOrientation(LinearLayout.VERTICAL);
+		progressContainer.setVisibility(View.GONE);
+		progressContainer.setGravity(Gravity.CENTER);
 
-		ListView lv = (ListView) layout.findViewById(android.R.id.list);
-		ViewGroup parent = (ViewGroup) lv.getParent();
+		ProgressBar progress = new ProgressBar(context, null, android.R.attr.progressBarStyleLarge);
+		progressContainer.addView(progress, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+				ViewGroup.LayoutParams.WRAP_CONTENT));
+
+		root.addView(progressContainer, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+				ViewGroup.LayoutParams.MATCH_PARENT));
+
+		// List container, holding the empty text and PullToRefresh View
+		FrameLayout listContainer = new FrameLayout(context);
+		listContainer.setId(R.id.ptr_internal_list_container);
+
+		TextView emptyView = new TextView(context);
+		emptyView.setId(R.id.ptr_internal_empty);
+		emptyView.setGravity(Gravity.CENTER);
+		listContainer.addView(emptyView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+				ViewGroup.LayoutParams.MATCH_PARENT));
 
-		// Remove ListView and add PullToRefreshListView in its place
-		int lvIndex = parent.indexOfChild(lv);
-		parent.removeViewAt(lvIndex);
 		mPullToRefreshListView = onCreatePullToRefreshListView(inflater, savedInstanceState);
-		parent.addView(mPullToRefreshListView, lvIndex, lv.getLayoutParams());
 
-		return layout;
+		// Reattach to a refresh which is still running in the host. Our host
+		// may not have been added yet, so it's kept rather than found again.
+		if (null == mRefreshHost) {
+			mRefreshHost = RefreshHostFragment.getInstance(getFragmentManager(), mRefreshHostTag);
+		}
+		setOnRefreshRestoredListener(mPullToRefreshListView, mRefreshHost);
+
+		listContainer.addView(mPullToRefreshListView, new FrameLayout.LayoutParams(
+				ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+		root.addView(listContainer, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+				ViewGroup.LayoutParams.MATCH_PARENT));
+
+		root.setLayoutParams(new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+				ViewGroup.LayoutParams.MATCH_PARENT));
+
+		mProgressContainer = progressContainer;
+		mListContainer = listContainer;
+		mEmptyView = emptyView;
+		mEmptyViewSet = false;
+		mListShown = true;
+
+		return root;
+	}
+
+	@Override
+	public void onViewCreated(View view, Bundle savedInstanceState) {
+		super.onViewCreated(view, savedInstanceState);
+
+		// Like ListFragment, show the progress until there's an adapter
+		if (null == getListAdapter()) {
+			setListShown(false, false);
+		}
+	}
+
+	@Override
+	public void setListAdapter(ListAdapter adapter) {
+		final boolean hadAdapter = null != getListAdapter();
+		super.setListAdapter(adapter);
+
+		if (null != mListContainer && !mListShown && !hadAdapter) {
+			setListShown(true, null != getView().getWindowToken());
+		}
+	}
+
+	@Override
+	public void setListShown(boolean shown) {
+		setListShown(shown, true);
+	}
+
+	@Override
+	public void setListShownNoAnimation(boolean shown) {
+		setListShown(shown, false);
+	}
+
+	@Override
+	public void setEmptyText(CharSequence text) {
+		if (null == mEmptyView) {
+			throw new IllegalStateException("Content view not yet created");
+		}
+		mEmptyView.setText(text);
+		if (!mEmptyViewSet) {
+			getListView().setEmptyView(mEmptyView);
+			mEmptyViewSet = true;
+		}
+	}
+
+	@Override
+	public void onStart() {
+		super.onStart();
+		mRefreshHost.attach(mPullToRefreshListView);
+	}
+
+	@Override
+	public void onStop() {
+		super.onStop();
+		mRefreshHost.detach();
+	}
+
+	@Override
+	public void onDestroyView() {
+		super.onDestroyView();
+		mPullToRefreshListView = null;
+		mProgressContainer = mListContainer = mEmptyView = null;
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// The host is only needed if we're about to be recreated
+		if (null != mRefreshHost && !isChangingConfigurations(getActivity())) {
+			RefreshHostFragment.remove(getFragmentManager(), mRefreshHost);
+			mRefreshHost = null;
+		}
+	}
+
+	/**
+	 * Runs <var>task</var> as the work for the current refresh, in a retained
+	 * {@link RefreshHostFragment}. This would usually be called from your
+	 * OnRefreshListener. If the Activity is recreated while the task is
+	 * running, the new PullToRefresh View is shown refreshing, and the result
+	 * is delivered to it, without the OnRefreshListener being called again.
+	 * If this is called before the Fragment has started, the task is started
+	 * once it has.
+	 *
+	 * @param task - Task to run. Each RefreshTask can only be started once.
+	 */
+	public final <R> void startRefresh(RefreshTask<R> task) {
+		mRefreshHost.start(task);
 	}
 
 	/**
@@ -65,4 +259,55 @@ abstract class PullToRefreshBaseListFragment<T extends PullToRefreshBase<? exten
 	 */
 	protected abstract T onCreatePullToRefreshListView(LayoutInflater inflater, Bundle savedInstanceState);
 
-}
\ No newline at end of file
+	private void setListShown(boolean shown, boolean animate) {
+		if (null == mListContainer) {
+			throw new IllegalStateException("Content view not yet created");
+		}
+		if (mListShown == shown) {
+			return;
+		}
+		mListShown = shown;
+
+		final View hide = shown ? mProgressContainer : mListContainer;
+		final View show = shown ? mListContainer : mProgressContainer;
+		if (animate) {
+			hide.startAnimation(AnimationUtils.loadAnimation(getActivity(), android.R.anim.fade_out));
+			show.startAnimation(AnimationUtils.loadAnimation(getActivity(), android.R.anim.fade_in));
+		} else {
+			hide.clearAnimation();
+			show.clearAnimation();
+		}
+		hide.setVisibility(View.GONE);
+		show.setVisibility(View.VISIBLE);
+	}
+
+	private static boolean isChangingConfigurations(Activity activity) {
+		if (null == activity) {
+			return false;
+		}
+		if (VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB) {
+			return SDK11.isChangingConfigurations(activity);
+		}
+		// Set before the Activity is destroyed to be relaunched
+		return activity.getChangingConfigurations() != 0;
+	}
+
+	private static <V extends View> void setOnRefreshRestoredListener(PullToRefreshBase<V> refreshView,
+			final RefreshHostFragment host) {
+		refreshView.setOnRefreshRestoredListener(new OnRefreshRestoredListener<V>() {
+			@Override
+			public boolean onRefreshRestored(PullToRefreshBase<V> refreshView, long sessionId) {
+				return host.isRunning(sessionId);
+			}
+		});
+	}
+
+	@TargetApi(11)
+	static class SDK11 {
+
+		static boolean isChangingConfigurations(Activity activity) {
+			return activity.isChangingConfigurations();
+		}
+	}
+
+}
@@ -23,9 +23,9 @@ import com.handmark.pulltorefresh.library.PullToRefreshExpandableListView;
 
 /**
  * A sample implementation of how to use {@link PullToRefreshExpandableListView}
- * with {@link ListFragment}. This implementation simply replaces the ListView
- * that {@code ListFragment} creates with a new
- * {@code PullToRefreshExpandableListView}. This means that ListFragment still
+ * with {@link ListFragment}. This implementation builds ListFragment's usual
+ * layout, but with a new {@code PullToRefreshExpandableListView} in place of
+ * the ListView. This means that ListFragment still
  * works 100% (e.g. <code>setListShown(...)</code> ).
  * <p/>
  * The new PullToRefreshListView is created in the method
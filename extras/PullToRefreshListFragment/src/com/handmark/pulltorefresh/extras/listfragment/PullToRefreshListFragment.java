@@ -23,8 +23,8 @@ import com.handmark.pulltorefresh.library.PullToRefreshListView;
 
 /**
  * A sample implementation of how to use {@link PullToRefreshListView} with
- * {@link ListFragment}. This implementation simply replaces the ListView that
- * {@code ListFragment} creates with a new PullToRefreshListView. This means
+ * {@link ListFragment}. This implementation builds ListFragment's usual
+ * layout, but with a new PullToRefreshListView in place of the ListView. This means
  * that ListFragment still works 100% (e.g. <code>setListShown(...)</code> ).
  * <p/>
  * The new PullToRefreshListView is created in the method
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.extras.listfragment;
+
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+import android.util.Log;
+
+import com.handmark.pulltorefresh.library.PullToRefreshBase;
+
+/**
+ * A headless Fragment which is retained across configuration changes, and
+ * owns the work of a running refresh. When the Activity is recreated, the new
+ * {@link PullToRefreshBase} View attaches to the same host, which then
+ * delivers the result to it (or has it shown refreshing until the result
+ * arrives), without starting a second fetch.
+ * <p/>
+ * {@link PullToRefreshListFragment} and
+ * {@link PullToRefreshExpandableListFragment} use this automatically, see
+ * {@link PullToRefreshBaseListFragment#startRefresh(RefreshTask)}.
+ */
+public class RefreshHostFragment extends Fragment {
+
+	static final String LOG_TAG = "PullToRefresh-RefreshHost";
+
+	/**
+	 * Finds the host with the given tag, adding one if needed. Must be called
+	 * from the UI thread.
+	 * <p/>
+	 * This is usually called from a Fragment's lifecycle, where the
+	 * transaction can't be executed straight away, so the new host can't be
+	 * found by tag until later. Keep the returned host (e.g. in a field of
+	 * the owning Fragment) rather than calling this again.
+	 *
+	 * @param fm - FragmentManager to use
+	 * @param tag - Tag which identifies the host, unique within <var>fm</var>
+	 * @return The RefreshHostFragment
+	 */
+	public static RefreshHostFragment getInstance(FragmentManager fm, String tag) {
+		RefreshHostFragment host = (RefreshHostFragment) fm.findFragmentByTag(tag);
+		if (null == host) {
+			host = new RefreshHostFragment();
+			fm.beginTransaction().add(host, tag).commit();
+		}
+		return host;
+	}
+
+	/**
+	 * Removes <var>host</var>, cancelling any running task.
+	 * 
+	 * @param fm - FragmentManager which the host was added to
+	 * @param host - Host from {@link #getInstance(FragmentManager, String)}
+	 */
+	public static void remove(FragmentManager fm, RefreshHostFragment host) {
+		// This is called while the Activity is being destroyed, after its
+		// state has been saved
+		fm.beginTransaction().remove(host).commitAllowingStateLoss();
+	}
+
+	private PullToRefreshBase<?> mRefreshView;
+
+	private RefreshTask<?> mRunningTask;
+	private long mRunningSessionId;
+
+	private boolean mHasPendingResult;
+
+	/**
+	 * Task started while no View was attached, so is started on the next
+	 * {@link #attach(PullToRefreshBase)}.
+	 */
+	private RefreshTask<?> mQueuedTask;
+
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setRetainInstance(true);
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		if (null != mQueuedTask) {
+			mQueuedTask.cancel();
+			mQueuedTask = null;
+		}
+		if (null != mRunningTask) {
+			mRunningTask.cancel();
+			mRunningTask = null;
+		}
+	}
+
+	/**
+	 * Attach a PullToRefresh View to this host. If a refresh finished while no
+	 * View was attached, its result is delivered now.
+	 *
+	 * @param refreshView - View to attach
+	 */
+	public void attach(PullToRefreshBase<?> refreshView) {
+		mRefreshView = refreshView;
+
+		if (mHasPendingResult) {
+			deliverResult();
+		}
+
+		if (null != mQueuedTask) {
+			final RefreshTask<?> task = mQueuedTask;
+			mQueuedTask = null;
+			run(task);
+		}
+	}
+
+	/**
+	 * Detach the currently attached View. Any result which arrives before the
+	 * next {@link #attach(PullToRefreshBase)} is held until then.
+	 */
+	public void detach() {
+		mRefreshView = null;
+	}
+
+	/**
+	 * @param sessionId - Session ID of a refresh, from
+	 *            {@link PullToRefreshBase#getRefreshSessionId()}
+	 * @return true if that refresh is still running, or has a result waiting
+	 *         to be delivered.
+	 */
+	public boolean isRunning(long sessionId) {
+		return null != mRunningTask && sessionId != 0 && sessionId == mRunningSessionId;
+	}
+
+	/**
+	 * Start <var>task</var> as the work for the current refresh of the
+	 * attached View. Any task which is already running, or waiting to be
+	 * started, is cancelled. If no View is attached yet, the task is started
+	 * once one is. Must be called from the UI thread.
+	 *
+	 * @param task - Task to run. Each RefreshTask can only be started once.
+	 * @throws IllegalStateException if the task has already been started
+	 */
+	public <R> void start(RefreshTask<R> task) {
+		if (task.mStarted) {
+			throw new IllegalStateException("A RefreshTask can only be started once");
+		}
+		task.mStarted = true;
+
+		if (null != mQueuedTask) {
+			mQueuedTask.cancel();
+			mQueuedTask = null;
+		}
+
+		if (null == mRefreshView) {
+			// We need the View's session ID, so wait until it's attached
+			mQueuedTask = task;
+			return;
+		}
+
+		run(task);
+	}
+
+	private void run(RefreshTask<?> task) {
+		if (null != mRunningTask) {
+			mRunningTask.cancel();
+		}
+
+		mRunningTask = task;
+		mRunningSessionId = mRefreshView.getRefreshSessionId();
+		mHasPendingResult = false;
+
+		task.execute(this);
+	}
+
+	void onTaskFinished(RefreshTask<?> task) {
+		// Ignore tasks which have been replaced
+		if (task != mRunningTask) {
+			return;
+		}
+
+		mHasPendingResult = true;
+		if (null != mRefreshView) {
+			deliverResult();
+		}
+	}
+
+	private void deliverResult() {
+		final RefreshTask<?> task = mRunningTask;
+		final PullToRefreshBase<?> refreshView = mRefreshView;
+
+		mRunningTask = null;
+		mRunningSessionId = 0;
+		mHasPendingResult = false;
+
+		task.deliver(refreshView);
+		refreshView.onRefreshComplete();
+	}
+
+	/**
+	 * The work done for a refresh. {@link #doInBackground()} is called on a
+	 * background thread, and the result is then given to
+	 * {@link #onDeliverResult(PullToRefreshBase, Object)} with whichever View
+	 * is attached to the host at that point. The refresh is completed
+	 * afterwards.
+	 * <p/>
+	 * Like AsyncTask, each RefreshTask can only be run once, so create a new
+	 * one for each refresh. A task which is replaced by another is cancelled,
+	 * and its result isn't delivered.
+	 *
+	 * @param <R> - Type of the result
+	 */
+	public static abstract class RefreshTask<R> {
+
+		RefreshHostFragment mHost;
+		boolean mStarted;
+		private volatile boolean mCancelled;
+
+		private R mResult;
+		private Exception mError;
+
+		private AsyncTask<Void, Void, Void> mAsyncTask;
+
+		/**
+		 * @return true if this task has been cancelled, so its result won't be
+		 *         delivered. Can be checked from {@link #doInBackground()}.
+		 */
+		public final boolean isCancelled() {
+			return mCancelled;
+		}
+
+		/**
+		 * Fetch the new data. Called on a background thread.
+		 */
+		protected abstract R doInBackground() throws Exception;
+
+		/**
+		 * Display the result. Called on the UI thread.
+		 *
+		 * @param refreshView - View currently attached to the host
+		 * @param result - Result of {@link #doInBackground()}
+		 */
+		protected abstract void onDeliverResult(PullToRefreshBase<?> refreshView, R result);
+
+		/**
+		 * Called on the UI thread, instead of
+		 * {@link #onDeliverResult(PullToRefreshBase, Object)}, if
+		 * {@link #doInBackground()} threw an exception. The default
+		 * implementation just logs it.
+		 *
+		 * @param refreshView - View currently attached to the host
+		 * @param e - Exception which was thrown
+		 */
+		protected void onDeliverError(PullToRefreshBase<?> refreshView, Exception e) {
+			Log.w(LOG_TAG, "Refresh failed", e);
+		}
+
+		/**
+		 * The AsyncTask is created here, rather than with the RefreshTask, as
+		 * it has to be created on the UI thread before Jelly Bean.
+		 */
+		final void execute(RefreshHostFragment host) {
+			mHost = host;
+			mAsyncTask = new AsyncTask<Void, Void, Void>() {
+
+				@Override
+				protected Void doInBackground(Void... params) {
+					try {
+						mResult = RefreshTask.this.doInBackground();
+					} catch (Exception e) {
+						mError = e;
+					}
+					return null;
+				}
+
+				@Override
+				protected void onPostExecute(Void unused) {
+					mHost.onTaskFinished(RefreshTask.this);
+				}
+			};
+			mAsyncTask.execute();
+		}
+
+		final void cancel() {
+			mCancelled = true;
+			if (null != mAsyncTask) {
+				mAsyncTask.cancel(false);
+			}
+		}
+
+		final void deliver(PullToRefreshBase<?> refreshView) {
+			if (null != mError) {
+				onDeliverError(refreshView, mError);
+			} else {
+				onDeliverResult(refreshView, mResult);
+			}
+		}
+	}
+
+}
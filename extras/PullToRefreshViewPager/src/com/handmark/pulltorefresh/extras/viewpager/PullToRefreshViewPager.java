@@ -16,20 +16,171 @@
 package com.handmark.pulltorefresh.extras.viewpager;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewPager;
+import android.support.v4.view.ViewPager.OnPageChangeListener;
 import android.util.AttributeSet;
+import android.util.SparseBooleanArray;
 
 import com.handmark.pulltorefresh.library.PullToRefreshBase;
 
 public class PullToRefreshViewPager extends PullToRefreshBase<ViewPager> {
 
+	/**
+	 * By default, a page is stale once it's older than this
+	 */
+	static final long DEFAULT_MAX_PAGE_AGE_MS = 5 * 60 * 1000;
+
+	private OnPageRefreshListener mOnPageRefreshListener;
+	private OnPageChangeListener mOnPageChangeListener;
+
+	/**
+	 * Time (from {@link SystemClock#elapsedRealtime()}) at which each page was
+	 * last refreshed, or 0 if it hasn't been.
+	 */
+	private long[] mPageRefreshTimes;
+	private SparseBooleanArray mPagesRefreshing;
+
+	private long mMaxPageAge;
+	private boolean mAdjacentPagePrefetchEnabled;
+	private int mRefreshingPage;
+
 	public PullToRefreshViewPager(Context context) {
 		super(context);
+		init();
 	}
 
 	public PullToRefreshViewPager(Context context, AttributeSet attrs) {
 		super(context, attrs);
+		init();
+	}
+
+	/**
+	 * @return The maximum age of a page before it is considered stale, in ms.
+	 */
+	public final long getMaxPageAge() {
+		return mMaxPageAge;
+	}
+
+	/**
+	 * Sets the maximum age of a page before it is considered stale, and so is
+	 * prefetched. The default is 5 minutes.
+	 * 
+	 * @param maxAgeMs - Maximum age, in ms
+	 */
+	public final void setMaxPageAge(long maxAgeMs) {
+		mMaxPageAge = maxAgeMs;
+	}
+
+	/**
+	 * @return true if stale adjacent pages are prefetched.
+	 */
+	public final boolean isAdjacentPagePrefetchEnabled() {
+		return mAdjacentPagePrefetchEnabled;
+	}
+
+	/**
+	 * Sets whether the pages either side of the current page should be
+	 * prefetched, via {@link OnPageRefreshListener#onPrefetchPage}, once the
+	 * ViewPager has settled, if they are stale. This also happens when the
+	 * adapter is set, and when this is enabled. The default is false.
+	 * 
+	 * @param enabled - true to prefetch stale adjacent pages
+	 */
+	public final void setAdjacentPagePrefetchEnabled(boolean enabled) {
+		mAdjacentPagePrefetchEnabled = enabled;
+		if (enabled) {
+			prefetchAdjacentPages();
+		}
+	}
+
+	/**
+	 * Set a listener which is called to refresh individual pages. A pull then
+	 * only refreshes the current page. This replaces any OnRefreshListener.
+	 * 
+	 * @param listener - Listener, or null to remove it
+	 */
+	public final void setOnPageRefreshListener(OnPageRefreshListener listener) {
+		mOnPageRefreshListener = listener;
+
+		if (null != listener) {
+			setOnRefreshListener(new OnRefreshListener<ViewPager>() {
+				@Override
+				public void onRefresh(PullToRefreshBase<ViewPager> refreshView) {
+					mRefreshingPage = getRefreshableView().getCurrentItem();
+
+					// If the page is already being prefetched, just wait for it
+					if (!mPagesRefreshing.get(mRefreshingPage)) {
+						mPagesRefreshing.put(mRefreshingPage, true);
+						mOnPageRefreshListener.onRefreshPage(PullToRefreshViewPager.this, mRefreshingPage);
+					}
+				}
+			});
+		} else {
+			setOnRefreshListener((OnRefreshListener<ViewPager>) null);
+		}
+	}
+
+	/**
+	 * Set an OnPageChangeListener on the ViewPager. This is the same as
+	 * calling <code>setOnPageChangeListener()</code> on the ViewPager, which
+	 * passes the listener on to this View, as it needs to listen to page
+	 * changes itself.
+	 * 
+	 * @param listener - Listener, or null to remove it
+	 */
+	public final void setOnPageChangeListener(OnPageChangeListener listener) {
+		mOnPageChangeListener = listener;
+	}
+
+	/**
+	 * Call this once a page has been refreshed or prefetched. If the page is
+	 * the one being refreshed by a pull, the refresh is completed.
+	 * 
+	 * @param position - Position of the page which has been refreshed
+	 */
+	public final void onPageRefreshComplete(int position) {
+		// Ignore positions which aren't in the adapter (any more)
+		final PagerAdapter adapter = getRefreshableView().getAdapter();
+		if (position >= 0 && null != adapter && position < adapter.getCount()) {
+			ensurePageRefreshTimesCapacity(position + 1);
+			mPageRefreshTimes[position] = SystemClock.elapsedRealtime();
+		}
+		finishPageRefresh(position);
+	}
+
+	/**
+	 * Call this if a page could not be refreshed or prefetched. The page is
+	 * left stale, so it will be prefetched again. If the page is the one being
+	 * refreshed by a pull, the refresh is completed.
+	 * 
+	 * @param position - Position of the page which failed to refresh
+	 */
+	public final void onPageRefreshFailed(int position) {
+		finishPageRefresh(position);
+	}
+
+	/**
+	 * @param position - Position of the page
+	 * @return true if the page has not been refreshed within the maximum page
+	 *         age.
+	 */
+	public final boolean isPageStale(int position) {
+		if (position < 0 || position >= mPageRefreshTimes.length || mPageRefreshTimes[position] == 0) {
+			return true;
+		}
+		return SystemClock.elapsedRealtime() - mPageRefreshTimes[position] > mMaxPageAge;
+	}
+
+	/**
+	 * Marks every page as stale, e.g. when the adapter's data set changes.
+	 */
+	public final void invalidatePages() {
+		for (int i = 0; i < mPageRefreshTimes.length; i++) {
+			mPageRefreshTimes[i] = 0;
+		}
+		mPagesRefreshing.clear();
 	}
 
 	@Override
@@ -39,11 +190,52 @@ public class PullToRefreshViewPager extends PullToRefreshBase<ViewPager> {
 
 	@Override
 	protected ViewPager createRefreshableView(Context context, AttributeSet attrs) {
-		ViewPager viewPager = new ViewPager(context, attrs);
+		ViewPager viewPager = new InternalViewPager(context, attrs);
 		viewPager.setId(R.id.viewpager);
 		return viewPager;
 	}
 
+	private void init() {
+		mMaxPageAge = DEFAULT_MAX_PAGE_AGE_MS;
+		mPageRefreshTimes = new long[0];
+		mPagesRefreshing = new SparseBooleanArray();
+	}
+
+	private void finishPageRefresh(int position) {
+		mPagesRefreshing.delete(position);
+
+		if (position == mRefreshingPage && isRefreshing()) {
+			onRefreshComplete();
+		}
+	}
+
+	private void ensurePageRefreshTimesCapacity(int capacity) {
+		if (mPageRefreshTimes.length < capacity) {
+			long[] times = new long[capacity];
+			System.arraycopy(mPageRefreshTimes, 0, times, 0, mPageRefreshTimes.length);
+			mPageRefreshTimes = times;
+		}
+	}
+
+	void prefetchAdjacentPages() {
+		final ViewPager viewPager = getRefreshableView();
+		final PagerAdapter adapter = viewPager.getAdapter();
+		if (!mAdjacentPagePrefetchEnabled || null == adapter || null == mOnPageRefreshListener) {
+			return;
+		}
+
+		final int current = viewPager.getCurrentItem();
+		prefetchPageIfStale(current - 1, adapter.getCount());
+		prefetchPageIfStale(current + 1, adapter.getCount());
+	}
+
+	private void prefetchPageIfStale(int position, int count) {
+		if (position >= 0 && position < count && !mPagesRefreshing.get(position) && isPageStale(position)) {
+			mPagesRefreshing.put(position, true);
+			mOnPageRefreshListener.onPrefetchPage(this, position);
+		}
+	}
+
 	@Override
 	protected boolean isReadyForPullStart() {
 		ViewPager refreshableView = getRefreshableView();
@@ -67,4 +259,96 @@ public class PullToRefreshViewPager extends PullToRefreshBase<ViewPager> {
 
 		return false;
 	}
+
+	/**
+	 * Keeps our own OnPageChangeListener, passing any listener set by the app
+	 * on to it, and prefetches once an adapter has been set.
+	 */
+	final class InternalViewPager extends ViewPager {
+
+		public InternalViewPager(Context context, AttributeSet attrs) {
+			super(context, attrs);
+			super.setOnPageChangeListener(new InternalOnPageChangeListener());
+		}
+
+		@Override
+		public void setOnPageChangeListener(OnPageChangeListener listener) {
+			mOnPageChangeListener = listener;
+		}
+
+		@Override
+		public void setAdapter(PagerAdapter adapter) {
+			super.setAdapter(adapter);
+
+			// Wait until the initial item has been set
+			post(new Runnable() {
+				@Override
+				public void run() {
+					prefetchAdjacentPages();
+				}
+			});
+		}
+	}
+
+	final class InternalOnPageChangeListener implements OnPageChangeListener {
+
+		@Override
+		public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+			if (null != mOnPageChangeListener) {
+				mOnPageChangeListener.onPageScrolled(position, positionOffset, positionOffsetPixels);
+			}
+		}
+
+		@Override
+		public void onPageSelected(int position) {
+			if (null != mOnPageChangeListener) {
+				mOnPageChangeListener.onPageSelected(position);
+			}
+		}
+
+		@Override
+		public void onPageScrollStateChanged(int state) {
+			// Once the pager has settled, prefetch either side
+			if (state == ViewPager.SCROLL_STATE_IDLE) {
+				prefetchAdjacentPages();
+			}
+
+			if (null != mOnPageChangeListener) {
+				mOnPageChangeListener.onPageScrollStateChanged(state);
+			}
+		}
+	}
+
+	/**
+	 * Listener which is called to refresh individual pages.
+	 */
+	public static interface OnPageRefreshListener {
+
+		/**
+		 * Called when the user has pulled to refresh the current page. Call
+		 * {@link PullToRefreshViewPager#onPageRefreshComplete(int)} once it has
+		 * been refreshed, or
+		 * {@link PullToRefreshViewPager#onPageRefreshFailed(int)} if it
+		 * couldn't be. This isn't called if the page is already being
+		 * prefetched, in which case the prefetch completes the refresh.
+		 * 
+		 * @param refreshView - View which has been pulled
+		 * @param position - Position of the page to refresh
+		 */
+		public void onRefreshPage(PullToRefreshViewPager refreshView, int position);
+
+		/**
+		 * Called when a stale page next to the current page should be
+		 * refreshed in the background. Call
+		 * {@link PullToRefreshViewPager#onPageRefreshComplete(int)} once it has
+		 * been refreshed, or
+		 * {@link PullToRefreshViewPager#onPageRefreshFailed(int)} if it
+		 * couldn't be.
+		 * 
+		 * @param refreshView - View which the page belongs to
+		 * @param position - Position of the page to prefetch
+		 */
+		public void onPrefetchPage(PullToRefreshViewPager refreshView, int position);
+
+	}
 }
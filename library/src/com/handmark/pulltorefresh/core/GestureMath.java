@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+/**
+ * The math used while the user is pulling: touch slop and direction filtering,
+ * and converting the motion into a scroll value with friction applied. All
+ * methods are static and allocation free.
+ */
+public final class GestureMath {
+
+	/**
+	 * The drag hasn't started, either because it's within the touch slop or
+	 * it's not in the pull direction.
+	 */
+	public static final int DRAG_NONE = 0;
+
+	/**
+	 * The drag has started towards the start (top/left) of the View.
+	 */
+	public static final int DRAG_START = 1;
+
+	/**
+	 * The drag has started towards the end (bottom/right) of the View.
+	 */
+	public static final int DRAG_END = 2;
+
+	public static final float DEFAULT_FRICTION = 2.0f;
+
+	private GestureMath() {
+	}
+
+	/**
+	 * Decides whether a movement starts a drag.
+	 * 
+	 * @param diff - Movement along the pull direction, since the last event
+	 * @param oppositeDiff - Movement along the opposite direction
+	 * @param touchSlop - Distance the movement must be over to start a drag
+	 * @param filterTouchEvents - true if the movement must be mostly along the
+	 *            pull direction
+	 * @return One of {@link #DRAG_NONE}, {@link #DRAG_START} or
+	 *         {@link #DRAG_END}.
+	 */
+	public static int getDragDirection(final float diff, final float oppositeDiff, final int touchSlop,
+			final boolean filterTouchEvents) {
+		final float absDiff = Math.abs(diff);
+
+		if (absDiff > touchSlop && (!filterTouchEvents || absDiff > Math.abs(oppositeDiff))) {
+			if (diff >= 1f) {
+				return DRAG_START;
+			} else if (diff <= -1f) {
+				return DRAG_END;
+			}
+		}
+		return DRAG_NONE;
+	}
+
+	/**
+	 * Converts the motion of a pull into the scroll value of the View.
+	 * 
+	 * @param initialMotionValue - Position at which the pull started
+	 * @param lastMotionValue - Current position of the pull
+	 * @param fromEnd - true if pulling from the end, false if from the start
+	 * @param friction - Amount the motion is divided by
+	 * @return Scroll value. Negative when pulling from the start, positive when
+	 *         pulling from the end.
+	 */
+	public static int computePullScroll(final float initialMotionValue, final float lastMotionValue,
+			final boolean fromEnd, final float friction) {
+		if (fromEnd) {
+			return Math.round(Math.max(initialMotionValue - lastMotionValue, 0) / friction);
+		} else {
+			return Math.round(Math.min(initialMotionValue - lastMotionValue, 0) / friction);
+		}
+	}
+
+	/**
+	 * @param scrollValue - Current scroll value
+	 * @param itemDimension - Size of the Loading Layout being pulled
+	 * @return How far the Loading Layout has been pulled, where 1f means fully
+	 *         shown.
+	 */
+	public static float computePullScale(final int scrollValue, final int itemDimension) {
+		return Math.abs(scrollValue) / (float) itemDimension;
+	}
+
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+/**
+ * Decides what should happen when a View overscrolls from a fling, as used by
+ * <code>OverscrollHelper</code>. All methods are static and allocation free.
+ */
+public final class OverscrollMath {
+
+	/**
+	 * Nothing needs to happen.
+	 */
+	public static final int ACTION_NONE = 0;
+
+	/**
+	 * The View has overscrolled past its start, so should show the header.
+	 */
+	public static final int ACTION_OVERSCROLL_START = 1;
+
+	/**
+	 * The View has overscrolled past its end, so should show the footer.
+	 */
+	public static final int ACTION_OVERSCROLL_END = 2;
+
+	/**
+	 * The View is back at its edge, so the overscroll should be reset.
+	 */
+	public static final int ACTION_RESET = 3;
+
+	private OverscrollMath() {
+	}
+
+	/**
+	 * @param newScrollValue - Scroll value after applying the delta
+	 * @param scrollRange - Scroll range of the View
+	 * @param fuzzyThreshold - How close to an edge counts as being at it
+	 * @return One of the <code>ACTION_</code> constants
+	 */
+	public static int resolveAction(final int newScrollValue, final int scrollRange, final int fuzzyThreshold) {
+		if (newScrollValue < (0 - fuzzyThreshold)) {
+			return ACTION_OVERSCROLL_START;
+		} else if (newScrollValue > (scrollRange + fuzzyThreshold)) {
+			return ACTION_OVERSCROLL_END;
+		} else if (Math.abs(newScrollValue) <= fuzzyThreshold
+				|| Math.abs(newScrollValue - scrollRange) <= fuzzyThreshold) {
+			return ACTION_RESET;
+		}
+		return ACTION_NONE;
+	}
+
+	/**
+	 * @return The header scroll for {@link #ACTION_OVERSCROLL_START}.
+	 */
+	public static int computeStartScroll(final float scaleFactor, final int currentScrollValue,
+			final int newScrollValue) {
+		return (int) (scaleFactor * (currentScrollValue + newScrollValue));
+	}
+
+	/**
+	 * @return The header scroll for {@link #ACTION_OVERSCROLL_END}.
+	 */
+	public static int computeEndScroll(final float scaleFactor, final int currentScrollValue,
+			final int newScrollValue, final int scrollRange) {
+		return (int) (scaleFactor * (currentScrollValue + newScrollValue - scrollRange));
+	}
+
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+/**
+ * The Pull-to-Refresh state machine. States are represented by their int
+ * values, which match those of <code>PullToRefreshBase.State</code> (and so
+ * are also what is saved in the instance state).
+ */
+public final class PullStateMachine {
+
+	public static final int STATE_RESET = 0x0;
+	public static final int STATE_PULL_TO_REFRESH = 0x1;
+	public static final int STATE_RELEASE_TO_REFRESH = 0x2;
+	public static final int STATE_REFRESHING = 0x8;
+	public static final int STATE_MANUAL_REFRESHING = 0x9;
+	public static final int STATE_OVERSCROLLING = 0x10;
+
+	private PullStateMachine() {
+	}
+
+	/**
+	 * @return true if <var>state</var> is one of the refreshing states.
+	 */
+	public static boolean isRefreshing(final int state) {
+		return state == STATE_REFRESHING || state == STATE_MANUAL_REFRESHING;
+	}
+
+	/**
+	 * Returns the state which a pull should move to, given how far it has been
+	 * pulled. The threshold is the size of the Loading Layout being pulled.
+	 * 
+	 * @param currentState - Current state
+	 * @param scrollValue - Current scroll value, as given by
+	 *            {@link GestureMath#computePullScroll(float, float, boolean, float)}
+	 * @param itemDimension - Size of the Loading Layout being pulled
+	 * @return The new state, which is <var>currentState</var> if it shouldn't
+	 *         change.
+	 */
+	public static int resolvePullState(final int currentState, final int scrollValue, final int itemDimension) {
+		if (scrollValue == 0 || isRefreshing(currentState)) {
+			return currentState;
+		}
+
+		final int absScrollValue = Math.abs(scrollValue);
+		if (currentState != STATE_PULL_TO_REFRESH && itemDimension >= absScrollValue) {
+			return STATE_PULL_TO_REFRESH;
+		} else if (currentState == STATE_PULL_TO_REFRESH && itemDimension < absScrollValue) {
+			return STATE_RELEASE_TO_REFRESH;
+		}
+		return currentState;
+	}
+
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+/**
+ * The math for each step of a smooth scroll. All methods are static and
+ * allocation free.
+ */
+public final class SmoothScrollMath {
+
+	/**
+	 * Time is normalized to 0..{@value #NORMALIZED_TIME_MAX}. We do do all
+	 * calculations in long to reduce software float calculations. We use 1000
+	 * as it gives us good accuracy and small rounding errors.
+	 */
+	public static final long NORMALIZED_TIME_MAX = 1000;
+
+	private SmoothScrollMath() {
+	}
+
+	/**
+	 * @param elapsed - Time since the scroll started, in ms
+	 * @param duration - Duration of the scroll, in ms
+	 * @return Normalized time, from 0 to {@link #NORMALIZED_TIME_MAX}.
+	 */
+	public static long computeNormalizedTime(final long elapsed, final long duration) {
+		final long normalizedTime = (NORMALIZED_TIME_MAX * elapsed) / duration;
+		return Math.max(Math.min(normalizedTime, NORMALIZED_TIME_MAX), 0);
+	}
+
+	/**
+	 * @param normalizedTime - Normalized time, as given by
+	 *            {@link #computeNormalizedTime(long, long)}
+	 * @return The input for an interpolator, from 0f to 1f.
+	 */
+	public static float toInterpolatorInput(final long normalizedTime) {
+		return normalizedTime / (float) NORMALIZED_TIME_MAX;
+	}
+
+	/**
+	 * @param fromValue - Scroll value at the start of the scroll
+	 * @param toValue - Scroll value at the end of the scroll
+	 * @param interpolation - Interpolated fraction of the scroll
+	 * @return The scroll value for this step.
+	 */
+	public static int computeScrollValue(final int fromValue, final int toValue, final float interpolation) {
+		return fromValue - Math.round((fromValue - toValue) * interpolation);
+	}
+
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.util.TypedValue;
+
+/**
+ * Overlay drawn by {@link PullToRefreshBase} when
+ * {@link PullToRefreshBase#setDebugHudEnabled(boolean)} is enabled. Shows the work counted by
+ * {@link PerformanceCounters} over the last second, and the time since the
+ * previous frame was drawn. Nothing is allocated while drawing.
+ */
+final class DebugHud {
+
+	static final long WINDOW_MS = 1000;
+
+	static final int TEXT_SIZE_DP = 11;
+	static final int PADDING_DP = 4;
+	static final int BACKGROUND_COLOR = 0xB0000000;
+
+	static final int LINE_COUNT = 5;
+
+	private final Paint mTextPaint;
+	private final Paint mBackgroundPaint;
+	private final float mPadding;
+	private final float mLineHeight;
+
+	private final StringBuilder mText = new StringBuilder(32);
+
+	// Totals at the start of the current window
+	private long mWindowStartMs;
+	private int mStartRequestLayouts, mStartHeaderScrolls, mStartStateChanges, mStartSmoothScrollFrames;
+
+	// Counts over the last complete window
+	private int mRequestLayouts, mHeaderScrolls, mStateChanges, mSmoothScrollFrames;
+
+	private long mLastDrawMs;
+	private long mFrameTimeMs;
+
+	DebugHud(Context context) {
+		final float density = context.getResources().getDisplayMetrics().density;
+
+		mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mTextPaint.setColor(Color.WHITE);
+		mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_DP, context
+				.getResources().getDisplayMetrics()));
+
+		mBackgroundPaint = new Paint();
+		mBackgroundPaint.setColor(BACKGROUND_COLOR);
+
+		mPadding = PADDING_DP * density;
+		mLineHeight = mTextPaint.getFontSpacing();
+	}
+
+	/**
+	 * @param canvas - Canvas to draw to
+	 * @param counters - Counters to display
+	 * @param left - Left edge to draw at
+	 * @param top - Top edge to draw at
+	 * @return true if any work was counted in the last second, in which case
+	 *         the HUD should be redrawn after {@link #WINDOW_MS}
+	 */
+	boolean draw(Canvas canvas, PerformanceCounters counters, float left, float top) {
+		final long now = SystemClock.uptimeMillis();
+		mFrameTimeMs = mLastDrawMs != 0 ? now - mLastDrawMs : 0;
+		mLastDrawMs = now;
+
+		if (now - mWindowStartMs >= WINDOW_MS) {
+			mRequestLayouts = counters.getRequestLayouts() - mStartRequestLayouts;
+			mHeaderScrolls = counters.getHeaderScrolls() - mStartHeaderScrolls;
+			mStateChanges = counters.getStateChanges() - mStartStateChanges;
+			mSmoothScrollFrames = counters.getSmoothScrollFrames() - mStartSmoothScrollFrames;
+
+			mStartRequestLayouts = counters.getRequestLayouts();
+			mStartHeaderScrolls = counters.getHeaderScrolls();
+			mStartStateChanges = counters.getStateChanges();
+			mStartSmoothScrollFrames = counters.getSmoothScrollFrames();
+			mWindowStartMs = now;
+		}
+
+		final float width = mTextPaint.measureText("smoothScrollFrames/s: 0000") + mPadding * 2;
+		canvas.drawRect(left, top, left + width, top + LINE_COUNT * mLineHeight + mPadding * 2, mBackgroundPaint);
+
+		final float x = left + mPadding;
+		float y = top + mPadding - mTextPaint.ascent();
+		y = drawLine(canvas, "requestLayout/s: ", mRequestLayouts, x, y);
+		y = drawLine(canvas, "setHeaderScroll/s: ", mHeaderScrolls, x, y);
+		y = drawLine(canvas, "stateChanges/s: ", mStateChanges, x, y);
+		y = drawLine(canvas, "smoothScrollFrames/s: ", mSmoothScrollFrames, x, y);
+		drawLine(canvas, "frameTime (ms): ", mFrameTimeMs < WINDOW_MS ? mFrameTimeMs : 0, x, y);
+
+		return mRequestLayouts > 0 || mHeaderScrolls > 0 || mStateChanges > 0 || mSmoothScrollFrames > 0;
+	}
+
+	private float drawLine(Canvas canvas, String label, long value, float x, float y) {
+		mText.setLength(0);
+		mText.append(label).append(value);
+		canvas.drawText(mText, 0, mText.length(), x, y, mTextPaint);
+		return y + mLineHeight;
+	}
+
+}
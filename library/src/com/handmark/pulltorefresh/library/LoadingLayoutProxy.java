@@ -37,6 +37,18 @@ public class LoadingLayoutProxy implements ILoadingLayout {
 		}
 	}
 
+	/**
+	 * Set the time of the last update on all of the layouts. See
+	 * {@link LoadingLayout#setLastUpdatedTime(long)}.
+	 * 
+	 * @param time - Time of the last update, in ms. 0 to clear.
+	 */
+	public void setLastUpdatedTime(long time) {
+		for (LoadingLayout layout : mLoadingLayouts) {
+			layout.setLastUpdatedTime(time);
+		}
+	}
+
 	@Override
 	public void setLoadingDrawable(Drawable drawable) {
 		for (LoadingLayout layout : mLoadingLayouts) {
@@ -19,6 +19,7 @@ import android.annotation.TargetApi;
 import android.util.Log;
 import android.view.View;
 
+import com.handmark.pulltorefresh.core.OverscrollMath;
 import com.handmark.pulltorefresh.library.PullToRefreshBase.Mode;
 import com.handmark.pulltorefresh.library.PullToRefreshBase.State;
 
@@ -134,34 +135,39 @@ public final class OverscrollHelper {
 							+ ", CurrentScroll: " + currentScrollValue);
 				}
 
-				if (newScrollValue < (0 - fuzzyThreshold)) {
-					// Check the mode supports the overscroll direction, and
-					// then move scroll
-					if (mode.showHeaderLoadingLayout()) {
-						// If we're currently at zero, we're about to start
-						// overscrolling, so change the state
-						if (currentScrollValue == 0) {
-							view.setState(State.OVERSCROLLING);
-						}
+				switch (OverscrollMath.resolveAction(newScrollValue, scrollRange, fuzzyThreshold)) {
+					case OverscrollMath.ACTION_OVERSCROLL_START:
+						// Check the mode supports the overscroll direction, and
+						// then move scroll
+						if (mode.showHeaderLoadingLayout()) {
+							// If we're currently at zero, we're about to start
+							// overscrolling, so change the state
+							if (currentScrollValue == 0) {
+								view.setState(State.OVERSCROLLING);
+							}
 
-						view.setHeaderScroll((int) (scaleFactor * (currentScrollValue + newScrollValue)));
-					}
-				} else if (newScrollValue > (scrollRange + fuzzyThreshold)) {
-					// Check the mode supports the overscroll direction, and
-					// then move scroll
-					if (mode.showFooterLoadingLayout()) {
-						// If we're currently at zero, we're about to start
-						// overscrolling, so change the state
-						if (currentScrollValue == 0) {
-							view.setState(State.OVERSCROLLING);
+							view.setHeaderScroll(OverscrollMath.computeStartScroll(scaleFactor, currentScrollValue,
+									newScrollValue));
 						}
+						break;
+					case OverscrollMath.ACTION_OVERSCROLL_END:
+						// Check the mode supports the overscroll direction, and
+						// then move scroll
+						if (mode.showFooterLoadingLayout()) {
+							// If we're currently at zero, we're about to start
+							// overscrolling, so change the state
+							if (currentScrollValue == 0) {
+								view.setState(State.OVERSCROLLING);
+							}
 
-						view.setHeaderScroll((int) (scaleFactor * (currentScrollValue + newScrollValue - scrollRange)));
-					}
-				} else if (Math.abs(newScrollValue) <= fuzzyThreshold
-						|| Math.abs(newScrollValue - scrollRange) <= fuzzyThreshold) {
-					// Means we've stopped overscrolling, so scroll back to 0
-					view.setState(State.RESET);
+							view.setHeaderScroll(OverscrollMath.computeEndScroll(scaleFactor, currentScrollValue,
+									newScrollValue, scrollRange));
+						}
+						break;
+					case OverscrollMath.ACTION_RESET:
+						// Means we've stopped overscrolling, so scroll back to 0
+						view.setState(State.RESET);
+						break;
 				}
 			} else if (isTouchEvent && State.OVERSCROLLING == view.getState()) {
 				// This condition means that we were overscrolling from a fling,
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library;
+
+import android.os.Debug;
+
+/**
+ * Counts the work done by a {@link PullToRefreshBase} View, so that the cost
+ * of a gesture can be measured (and compared between changes) without a
+ * profiler. Set an instance with
+ * {@link PullToRefreshBase#setPerformanceCounters(PerformanceCounters)}, run
+ * the gesture, then read the counts (or the <code>*PerMove</code> averages).
+ * <p/>
+ * When no counters are set, the View does no counting at all.
+ */
+public final class PerformanceCounters {
+
+	int mMoveEvents;
+	int mRequestLayouts;
+	int mInvalidates;
+	int mHeaderScrolls;
+	int mStateChanges;
+	int mSmoothScrollFrames;
+	long mMoveAllocatedBytes;
+
+	private boolean mCountAllocations;
+	private boolean mImmediatePullEvents;
+	private int mAllocSizeAtWorkStart;
+	private int mWorkDepth;
+
+	/**
+	 * Resets all of the counts to zero.
+	 */
+	public void reset() {
+		mMoveEvents = 0;
+		mRequestLayouts = 0;
+		mInvalidates = 0;
+		mHeaderScrolls = 0;
+		mStateChanges = 0;
+		mSmoothScrollFrames = 0;
+		mMoveAllocatedBytes = 0;
+	}
+
+	/**
+	 * Enable counting of the bytes allocated while handling MOVE events. This
+	 * uses {@link Debug#startAllocCounting()}, which slows down every
+	 * allocation in the process, so only enable it while measuring.
+	 *
+	 * @param enabled - Whether to count allocations
+	 */
+	@SuppressWarnings("deprecation")
+	public void setAllocationCountingEnabled(boolean enabled) {
+		if (enabled != mCountAllocations) {
+			mCountAllocations = enabled;
+			if (enabled) {
+				Debug.startAllocCounting();
+			} else {
+				Debug.stopAllocCounting();
+			}
+		}
+	}
+
+	/**
+	 * @return Number of MOVE events dispatched to the View
+	 */
+	public int getMoveEvents() {
+		return mMoveEvents;
+	}
+
+	/**
+	 * @return Number of times a layout was requested on the View, either
+	 *         directly or by one of its children
+	 */
+	public int getRequestLayouts() {
+		return mRequestLayouts;
+	}
+
+	/**
+	 * @return Number of times the View, or one of its children, was
+	 *         invalidated
+	 */
+	public int getInvalidates() {
+		return mInvalidates;
+	}
+
+	/**
+	 * @return Number of times the Header/Footer scroll was set, from the
+	 *         gesture or from a smooth scroll
+	 */
+	public int getHeaderScrolls() {
+		return mHeaderScrolls;
+	}
+
+	/**
+	 * @return Number of {@link PullToRefreshBase.State} changes
+	 */
+	public int getStateChanges() {
+		return mStateChanges;
+	}
+
+	/**
+	 * @return Number of frames drawn by smooth scrolls
+	 */
+	public int getSmoothScrollFrames() {
+		return mSmoothScrollFrames;
+	}
+
+	/**
+	 * @return Bytes allocated while handling MOVE events (including the
+	 *         deferred Pull Events), if
+	 *         {@link #setAllocationCountingEnabled(boolean)} has been enabled
+	 */
+	public long getMoveAllocatedBytes() {
+		return mMoveAllocatedBytes;
+	}
+
+	/**
+	 * @return {@link #getRequestLayouts()}, averaged over the MOVE events
+	 */
+	public float getRequestLayoutsPerMove() {
+		return perMove(mRequestLayouts);
+	}
+
+	/**
+	 * @return {@link #getInvalidates()}, averaged over the MOVE events
+	 */
+	public float getInvalidatesPerMove() {
+		return perMove(mInvalidates);
+	}
+
+	/**
+	 * @return {@link #getHeaderScrolls()}, averaged over the MOVE events
+	 */
+	public float getHeaderScrollsPerMove() {
+		return perMove(mHeaderScrolls);
+	}
+
+	/**
+	 * @return {@link #getMoveAllocatedBytes()}, averaged over the MOVE events
+	 */
+	public float getAllocatedBytesPerMove() {
+		return perMove(mMoveAllocatedBytes);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PerformanceCounters[moves=%d, requestLayouts=%d, invalidates=%d, headerScrolls=%d, "
+				+ "stateChanges=%d, smoothScrollFrames=%d, moveAllocatedBytes=%d]", mMoveEvents, mRequestLayouts,
+				mInvalidates, mHeaderScrolls, mStateChanges, mSmoothScrollFrames, mMoveAllocatedBytes);
+	}
+
+	void onMoveEvent() {
+		mMoveEvents++;
+	}
+
+	/**
+	 * Called around the handling of a MOVE event, and around the Pull Event
+	 * it schedules (which may run later, once per frame). These can nest.
+	 */
+	@SuppressWarnings("deprecation")
+	void onWorkStart() {
+		if (mWorkDepth++ == 0 && mCountAllocations) {
+			mAllocSizeAtWorkStart = Debug.getThreadAllocSize();
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	void onWorkEnd() {
+		// Counters may have been set part way through
+		if (mWorkDepth > 0 && --mWorkDepth == 0 && mCountAllocations) {
+			mMoveAllocatedBytes += Debug.getThreadAllocSize() - mAllocSizeAtWorkStart;
+		}
+	}
+
+	/**
+	 * Whether the View should apply each MOVE event's Pull Event straight
+	 * away, rather than once per frame (on Jelly Bean and above). This makes
+	 * all of a MOVE's work part of its <code>dispatchTouchEvent()</code>, so
+	 * that it can be timed, e.g. when replaying a gesture. Default is false.
+	 * 
+	 * @param enabled - true to apply Pull Events straight away
+	 */
+	public void setImmediatePullEventsEnabled(boolean enabled) {
+		mImmediatePullEvents = enabled;
+	}
+
+	/**
+	 * @return true if Pull Events are applied straight away
+	 */
+	public boolean isImmediatePullEventsEnabled() {
+		return mImmediatePullEvents;
+	}
+
+	private float perMove(long count) {
+		return mMoveEvents > 0 ? count / (float) mMoveEvents : 0f;
+	}
+
+}
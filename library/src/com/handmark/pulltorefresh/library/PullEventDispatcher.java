@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.view.View;
+
+import com.handmark.pulltorefresh.library.PullToRefreshBase.Mode;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.OnPullEventListener;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.PullEventDispatchMode;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.State;
+import com.handmark.pulltorefresh.library.internal.ViewCompat;
+
+/**
+ * Delivers Pull Events to any number of {@link OnPullEventListener}s, using
+ * one of the {@link PullEventDispatchMode}s. Once warmed up, no objects are
+ * allocated per event: queued events are stored as ordinals, and background
+ * events use pooled Messages.
+ */
+final class PullEventDispatcher<T extends View> implements Runnable, Handler.Callback {
+
+	static final int INITIAL_QUEUE_CAPACITY = 4;
+
+	private static Handler sBackgroundHandler;
+
+	private static Handler getBackgroundHandler() {
+		if (null == sBackgroundHandler) {
+			HandlerThread thread = new HandlerThread("PullToRefresh-Events", Process.THREAD_PRIORITY_BACKGROUND);
+			thread.start();
+			sBackgroundHandler = new Handler(thread.getLooper());
+		}
+		return sBackgroundHandler;
+	}
+
+	private final PullToRefreshBase<T> mRefreshView;
+
+	/**
+	 * Copied on write, so that it can be safely iterated from the background
+	 * thread.
+	 */
+	private volatile ArrayList<OnPullEventListener<T>> mListeners;
+
+	private PullEventDispatchMode mDispatchMode = PullEventDispatchMode.getDefault();
+
+	// Events queued for the next frame, as ordinals
+	private int[] mQueuedStates = new int[INITIAL_QUEUE_CAPACITY];
+	private int[] mQueuedModes = new int[INITIAL_QUEUE_CAPACITY];
+	private int mQueuedCount;
+	private boolean mFramePosted;
+
+	private Handler mBackgroundHandler;
+
+	PullEventDispatcher(PullToRefreshBase<T> refreshView) {
+		mRefreshView = refreshView;
+		mListeners = new ArrayList<OnPullEventListener<T>>(1);
+	}
+
+	void addListener(OnPullEventListener<T> listener) {
+		if (null != listener && !mListeners.contains(listener)) {
+			ArrayList<OnPullEventListener<T>> listeners = new ArrayList<OnPullEventListener<T>>(mListeners);
+			listeners.add(listener);
+			mListeners = listeners;
+		}
+	}
+
+	void removeListener(OnPullEventListener<T> listener) {
+		if (mListeners.contains(listener)) {
+			ArrayList<OnPullEventListener<T>> listeners = new ArrayList<OnPullEventListener<T>>(mListeners);
+			listeners.remove(listener);
+			mListeners = listeners;
+		}
+	}
+
+	void clearListeners() {
+		if (!mListeners.isEmpty()) {
+			mListeners = new ArrayList<OnPullEventListener<T>>(1);
+		}
+	}
+
+	PullEventDispatchMode getDispatchMode() {
+		return mDispatchMode;
+	}
+
+	void setDispatchMode(PullEventDispatchMode mode) {
+		if (mode != mDispatchMode) {
+			// Deliver anything which is waiting for the next frame first
+			flushQueue();
+			mDispatchMode = mode;
+		}
+	}
+
+	/**
+	 * Called from the UI thread whenever the state changes.
+	 */
+	void dispatch(State state, Mode direction) {
+		if (mListeners.isEmpty()) {
+			return;
+		}
+
+		switch (mDispatchMode) {
+			case PER_FRAME:
+				enqueue(state, direction);
+				if (!mFramePosted) {
+					mFramePosted = true;
+					ViewCompat.postOnAnimation(mRefreshView, this);
+				}
+				break;
+
+			case BACKGROUND:
+				if (null == mBackgroundHandler) {
+					mBackgroundHandler = new Handler(getBackgroundHandler().getLooper(), this);
+				}
+				Message.obtain(mBackgroundHandler, state.ordinal(), direction.ordinal(), 0).sendToTarget();
+				break;
+
+			case SYNCHRONOUS:
+			default:
+				deliver(state, direction);
+				break;
+		}
+	}
+
+	/**
+	 * Delivers the events queued during the last frame.
+	 */
+	@Override
+	public void run() {
+		mFramePosted = false;
+		flushQueue();
+	}
+
+	/**
+	 * Delivers an event on the background thread.
+	 */
+	@Override
+	public boolean handleMessage(Message msg) {
+		deliver(State.VALUES[msg.what], Mode.VALUES[msg.arg1]);
+		return true;
+	}
+
+	private void enqueue(State state, Mode direction) {
+		final int count = mQueuedCount;
+
+		// Coalesce repeated events within the frame
+		if (count > 0 && mQueuedStates[count - 1] == state.ordinal() && mQueuedModes[count - 1] == direction.ordinal()) {
+			return;
+		}
+
+		if (count == mQueuedStates.length) {
+			int[] states = new int[count * 2];
+			int[] modes = new int[count * 2];
+			System.arraycopy(mQueuedStates, 0, states, 0, count);
+			System.arraycopy(mQueuedModes, 0, modes, 0, count);
+			mQueuedStates = states;
+			mQueuedModes = modes;
+		}
+
+		mQueuedStates[count] = state.ordinal();
+		mQueuedModes[count] = direction.ordinal();
+		mQueuedCount = count + 1;
+	}
+
+	private void flushQueue() {
+		// A listener may cause more events, which are appended and so also
+		// delivered by this loop
+		for (int i = 0; i < mQueuedCount; i++) {
+			deliver(State.VALUES[mQueuedStates[i]], Mode.VALUES[mQueuedModes[i]]);
+		}
+		mQueuedCount = 0;
+	}
+
+	private void deliver(State state, Mode direction) {
+		final ArrayList<OnPullEventListener<T>> listeners = mListeners;
+		for (int i = 0, z = listeners.size(); i < z; i++) {
+			listeners.get(i).onPullEvent(mRefreshView, state, direction);
+		}
+	}
+
+}
@@ -107,12 +107,9 @@ public abstract class PullToRefreshAdapterViewBase<T extends AbsListView> extend
 					+ ". Total Items:" + totalItemCount);
 		}
 
-		/**
-		 * Set whether the Last Item is Visible. lastVisibleItemIndex is a
-		 * zero-based index, so we minus one totalItemCount to check
-		 */
+		// Set whether the Last Item is Visible
 		if (null != mOnLastItemVisibleListener) {
-			mLastItemVisible = (totalItemCount > 0) && (firstVisibleItem + visibleItemCount >= totalItemCount - 1);
+			mLastItemVisible = hasReachedLastItem(firstVisibleItem, visibleItemCount, totalItemCount);
 		}
 
 		// If we're showing the indicator, check positions...
@@ -120,6 +117,9 @@ public abstract class PullToRefreshAdapterViewBase<T extends AbsListView> extend
 			updateIndicatorViewsVisibility();
 		}
 
+		// Let derivative classes react to the scroll
+		onRefreshableViewScroll(firstVisibleItem, visibleItemCount, totalItemCount);
+
 		// Finally call OnScrollListener if we have one
 		if (null != mOnScrollListener) {
 			mOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
@@ -311,6 +311,38 @@ public abstract class PullToRefreshAdapterViewBase<T extends AbsListView> extend
 		return isLastItemVisible();
 	}
 
+	/**
+	 * Called from {@link #onScroll(AbsListView, int, int, int) onScroll()} to
+	 * decide whether the {@link OnLastItemVisibleListener} should be called
+	 * once scrolling stops. Derivative classes can override this when the
+	 * Refreshable View's positions don't map directly onto rows, such as a
+	 * multi-column GridView.
+	 * 
+	 * @param firstVisibleItem - the index of the first visible cell
+	 * @param visibleItemCount - the number of visible cells
+	 * @param totalItemCount - the number of items in the list adapter
+	 * @return true if the last item is (or is about to be) visible
+	 */
+	protected boolean hasReachedLastItem(int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		/**
+		 * lastVisibleItemIndex is a zero-based index, so we minus one
+		 * totalItemCount to check
+		 */
+		return (totalItemCount > 0) && (firstVisibleItem + visibleItemCount >= totalItemCount - 1);
+	}
+
+	/**
+	 * Called from {@link #onScroll(AbsListView, int, int, int) onScroll()} so
+	 * that derivative classes can react to the Refreshable View scrolling,
+	 * without needing to set their own OnScrollListener.
+	 * 
+	 * @param firstVisibleItem - the index of the first visible cell
+	 * @param visibleItemCount - the number of visible cells
+	 * @param totalItemCount - the number of items in the list adapter
+	 */
+	protected void onRefreshableViewScroll(int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+	}
+
 	@Override
 	protected void onScrollChanged(int l, int t, int oldl, int oldt) {
 		super.onScrollChanged(l, t, oldl, oldt);
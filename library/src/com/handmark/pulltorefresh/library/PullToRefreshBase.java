@@ -17,6 +17,8 @@ package com.handmark.pulltorefresh.library;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
@@ -29,11 +31,15 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 
+import com.handmark.pulltorefresh.core.GestureMath;
+import com.handmark.pulltorefresh.core.PullStateMachine;
+import com.handmark.pulltorefresh.core.SmoothScrollMath;
 import com.handmark.pulltorefresh.library.internal.FlipLoadingLayout;
 import com.handmark.pulltorefresh.library.internal.LoadingLayout;
 import com.handmark.pulltorefresh.library.internal.RotateLoadingLayout;
@@ -52,7 +58,7 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 
 	static final String LOG_TAG = "PullToRefresh";
 
-	static final float FRICTION = 2.0f;
+	static final float FRICTION = GestureMath.DEFAULT_FRICTION;
 
 	public static final int SMOOTH_SCROLL_DURATION_MS = 200;
 	public static final int SMOOTH_SCROLL_LONG_DURATION_MS = 325;
@@ -63,6 +69,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 	static final String STATE_CURRENT_MODE = "ptr_current_mode";
 	static final String STATE_SCROLLING_REFRESHING_ENABLED = "ptr_disable_scrolling";
 	static final String STATE_SHOW_REFRESHING_VIEW = "ptr_show_refreshing_view";
+	static final String STATE_LAST_REFRESH_TIME = "ptr_last_refresh_time";
+	static final String STATE_REFRESH_SESSION_ID = "ptr_refresh_session_id";
 	static final String STATE_SUPER = "ptr_super";
 
 	// ===========================================================
@@ -74,6 +82,13 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 	private float mInitialMotionX, mInitialMotionY;
 
 	private boolean mIsBeingDragged = false;
+
+	/**
+	 * Whether a nested PullToRefresh View has claimed pulls from our start or
+	 * end edge, for the current gesture.
+	 */
+	private boolean mNestedClaimStart, mNestedClaimEnd;
+
 	private State mState = State.RESET;
 	private Mode mMode = Mode.getDefault();
 
@@ -86,6 +101,11 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 	private boolean mFilterTouchEvents = true;
 	private boolean mOverScrollEnabled = true;
 	private boolean mLayoutVisibilityChangesEnabled = true;
+	private boolean mShowLastUpdatedTime = false;
+
+	private long mLastRefreshTime;
+	private long mRefreshSessionId;
+	private boolean mReattachingRefresh = false;
 
 	private Interpolator mScrollAnimationInterpolator;
 	private AnimationStyle mLoadingAnimationStyle = AnimationStyle.getDefault();
@@ -95,10 +115,32 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 
 	private OnRefreshListener<T> mOnRefreshListener;
 	private OnRefreshListener2<T> mOnRefreshListener2;
-	private OnPullEventListener<T> mOnPullEventListener;
+	private OnRefreshRestoredListener<T> mOnRefreshRestoredListener;
+	private OnSpeculativeRefreshListener<T> mOnSpeculativeRefreshListener;
+	private boolean mSpeculativeRefreshStarted = false;
+	private PullEventDispatcher<T> mPullEventDispatcher;
+	private PerformanceCounters mPerformanceCounters;
+	private DebugHud mDebugHud;
+	private boolean mDebugHudRedrawPending = false;
+	private final Runnable mDebugHudRedrawRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mDebugHudRedrawPending = false;
+			invalidate();
+		}
+	};
 
 	private SmoothScrollRunnable mCurrentSmoothScrollRunnable;
 
+	private boolean mPullEventPending = false;
+	private final Runnable mPullEventRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mPullEventPending = false;
+			countedPullEvent();
+		}
+	};
+
 	// ===========================================================
 	// Constructors
 	// ===========================================================
@@ -141,6 +183,50 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		}
 	}
 
+	@Override
+	protected void dispatchDraw(Canvas canvas) {
+		super.dispatchDraw(canvas);
+
+		if (null != mDebugHud && null != mPerformanceCounters) {
+			// The Canvas is translated by our scroll, so draw relative to it
+			if (mDebugHud.draw(canvas, mPerformanceCounters, getScrollX(), getScrollY())
+					&& !mDebugHudRedrawPending) {
+				// Redraw so that the counts fall back to zero once idle
+				mDebugHudRedrawPending = true;
+				postDelayed(mDebugHudRedrawRunnable, DebugHud.WINDOW_MS);
+			}
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+
+		if (mDebugHudRedrawPending) {
+			removeCallbacks(mDebugHudRedrawRunnable);
+			mDebugHudRedrawPending = false;
+		}
+
+		if (mPullEventPending) {
+			removeCallbacks(mPullEventRunnable);
+			mPullEventPending = false;
+		}
+	}
+
+	@Override
+	public boolean dispatchTouchEvent(MotionEvent event) {
+		final PerformanceCounters counters = mPerformanceCounters;
+		if (null == counters || event.getAction() != MotionEvent.ACTION_MOVE) {
+			return super.dispatchTouchEvent(event);
+		}
+
+		counters.onMoveEvent();
+		counters.onWorkStart();
+		final boolean handled = super.dispatchTouchEvent(event);
+		counters.onWorkEnd();
+		return handled;
+	}
+
 	@Override
 	public final boolean demo() {
 		if (mMode.showHeaderLoadingLayout() && isReadyForPullStart()) {
@@ -174,11 +260,41 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		return createLoadingLayoutProxy(includeStart, includeEnd);
 	}
 
+	/**
+	 * Get the time at which the last refresh was completed, via
+	 * {@link #onRefreshComplete()}.
+	 * 
+	 * @return Time in ms, or 0 if there hasn't been a refresh yet
+	 */
+	public final long getLastRefreshTime() {
+		return mLastRefreshTime;
+	}
+
 	@Override
 	public final Mode getMode() {
 		return mMode;
 	}
 
+	/**
+	 * Get the PerformanceCounters which this View is counting its work into.
+	 * 
+	 * @return The PerformanceCounters, or null if counting is disabled
+	 */
+	public final PerformanceCounters getPerformanceCounters() {
+		return mPerformanceCounters;
+	}
+
+	/**
+	 * Get the session ID of the current refresh. A new ID is given to each
+	 * refresh when it starts, and it is kept across saved state, so it can be
+	 * used to match a refresh with work which is still running.
+	 * 
+	 * @return Session ID, or 0 if the View isn't refreshing
+	 */
+	public final long getRefreshSessionId() {
+		return mRefreshSessionId;
+	}
+
 	@Override
 	public final T getRefreshableView() {
 		return mRefreshableView;
@@ -194,6 +310,13 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		return mState;
 	}
 
+	/**
+	 * @return true if the debug HUD is shown.
+	 */
+	public final boolean isDebugHudEnabled() {
+		return null != mDebugHud;
+	}
+
 	/**
 	 * @deprecated See {@link #isScrollingWhileRefreshingEnabled()}.
 	 */
@@ -201,6 +324,23 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		return !isScrollingWhileRefreshingEnabled();
 	}
 
+	@Override
+	public void invalidate() {
+		if (null != mPerformanceCounters) {
+			mPerformanceCounters.mInvalidates++;
+		}
+		super.invalidate();
+	}
+
+	@Override
+	public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+		// Invalidations from the Refreshable View and Loading Layouts
+		if (null != mPerformanceCounters) {
+			mPerformanceCounters.mInvalidates++;
+		}
+		return super.invalidateChildInParent(location, dirty);
+	}
+
 	@Override
 	public final boolean isPullToRefreshEnabled() {
 		return mMode.permitsPullToRefresh();
@@ -222,6 +362,16 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		return mScrollingWhileRefreshingEnabled;
 	}
 
+	/**
+	 * Returns whether the Last Updated label automatically shows the time
+	 * since the last completed refresh.
+	 * 
+	 * @return true if the relative Last Updated label is enabled
+	 */
+	public final boolean isShowLastUpdatedTime() {
+		return mShowLastUpdatedTime;
+	}
+
 	@Override
 	public final boolean onInterceptTouchEvent(MotionEvent event) {
 
@@ -233,6 +383,7 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 
 		if (action == MotionEvent.ACTION_CANCEL || action == MotionEvent.ACTION_UP) {
 			mIsBeingDragged = false;
+			mNestedClaimStart = mNestedClaimEnd = false;
 			return false;
 		}
 
@@ -247,51 +398,74 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 					return true;
 				}
 
-				if (isReadyForPull()) {
-					final float y = event.getY(), x = event.getX();
-					final float diff, oppositeDiff, absDiff;
-
-					// We need to use the correct values, based on scroll
-					// direction
-					switch (getPullToRefreshScrollDirection()) {
-						case HORIZONTAL:
-							diff = x - mLastMotionX;
-							oppositeDiff = y - mLastMotionY;
-							break;
-						case VERTICAL:
-						default:
-							diff = y - mLastMotionY;
-							oppositeDiff = x - mLastMotionX;
-							break;
+				final float y = event.getY(), x = event.getX();
+				final float diff, oppositeDiff;
+
+				// We need to use the correct values, based on scroll
+				// direction
+				switch (getPullToRefreshScrollDirection()) {
+					case HORIZONTAL:
+						diff = x - mLastMotionX;
+						oppositeDiff = y - mLastMotionY;
+						break;
+					case VERTICAL:
+					default:
+						diff = y - mLastMotionY;
+						oppositeDiff = x - mLastMotionX;
+						break;
+				}
+
+				/**
+				 * Check the (cheap) slop and direction first, so that we only
+				 * check whether the Refreshable View is ready once it could
+				 * actually start a pull.
+				 */
+				final int dragDirection = GestureMath.getDragDirection(diff, oppositeDiff, mTouchSlop, mFilterTouchEvents);
+				if (dragDirection != GestureMath.DRAG_NONE) {
+					// If a nested PullToRefresh View can pull from this edge,
+					// leave it alone
+					if (dragDirection == GestureMath.DRAG_START ? mNestedClaimStart : mNestedClaimEnd) {
+						return false;
 					}
-					absDiff = Math.abs(diff);
-
-					if (absDiff > mTouchSlop && (!mFilterTouchEvents || absDiff > Math.abs(oppositeDiff))) {
-						if (mMode.showHeaderLoadingLayout() && diff >= 1f && isReadyForPullStart()) {
-							mLastMotionY = y;
-							mLastMotionX = x;
-							mIsBeingDragged = true;
-							if (mMode == Mode.BOTH) {
-								mCurrentMode = Mode.PULL_FROM_START;
-							}
-						} else if (mMode.showFooterLoadingLayout() && diff <= -1f && isReadyForPullEnd()) {
-							mLastMotionY = y;
-							mLastMotionX = x;
-							mIsBeingDragged = true;
-							if (mMode == Mode.BOTH) {
-								mCurrentMode = Mode.PULL_FROM_END;
-							}
+
+					if (mMode.showHeaderLoadingLayout() && dragDirection == GestureMath.DRAG_START
+							&& isReadyForPullStart()) {
+						mLastMotionY = y;
+						mLastMotionX = x;
+						mIsBeingDragged = true;
+						if (mMode == Mode.BOTH) {
+							mCurrentMode = Mode.PULL_FROM_START;
+						}
+					} else if (mMode.showFooterLoadingLayout() && dragDirection == GestureMath.DRAG_END
+							&& isReadyForPullEnd()) {
+						mLastMotionY = y;
+						mLastMotionX = x;
+						mIsBeingDragged = true;
+						if (mMode == Mode.BOTH) {
+							mCurrentMode = Mode.PULL_FROM_END;
 						}
 					}
+
+					// Make sure our ancestors (such as a ViewPager) don't take
+					// the gesture from us now
+					if (mIsBeingDragged && null != getParent()) {
+						getParent().requestDisallowInterceptTouchEvent(true);
+					}
 				}
 				break;
 			}
 			case MotionEvent.ACTION_DOWN: {
-				if (isReadyForPull()) {
-					mLastMotionY = mInitialMotionY = event.getY();
-					mLastMotionX = mInitialMotionX = event.getX();
-					mIsBeingDragged = false;
-				}
+				mLastMotionY = mInitialMotionY = event.getY();
+				mLastMotionX = mInitialMotionX = event.getX();
+				mIsBeingDragged = false;
+
+				/**
+				 * Our ancestors have already seen this DOWN, so any claim on
+				 * us is from the previous gesture. We then claim the edges we
+				 * can pull from with our PullToRefresh ancestors.
+				 */
+				mNestedClaimStart = mNestedClaimEnd = false;
+				claimEdgesWithAncestors();
 				break;
 			}
 		}
@@ -302,6 +476,10 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 	@Override
 	public final void onRefreshComplete() {
 		if (isRefreshing()) {
+			mLastRefreshTime = System.currentTimeMillis();
+			if (mShowLastUpdatedTime) {
+				setLoadingLayoutsLastUpdatedTime(mLastRefreshTime);
+			}
 			setState(State.RESET);
 		}
 	}
@@ -327,7 +505,7 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 				if (mIsBeingDragged) {
 					mLastMotionY = event.getY();
 					mLastMotionX = event.getX();
-					pullEvent();
+					schedulePullEvent();
 					return true;
 				}
 				break;
@@ -347,6 +525,9 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 				if (mIsBeingDragged) {
 					mIsBeingDragged = false;
 
+					// Make sure the last move has been applied
+					flushPendingPullEvent();
+
 					if (mState == State.RELEASE_TO_REFRESH
 							&& (null != mOnRefreshListener || null != mOnRefreshListener2)) {
 						setState(State.REFRESHING, true);
@@ -429,8 +610,104 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		}
 	}
 
+	/**
+	 * Set OnPullEventListener for the Widget. This replaces any listeners
+	 * added with {@link #addOnPullEventListener(OnPullEventListener)}.
+	 * 
+	 * @param listener - Listener to be used when the Widget has a pull event to
+	 *            propogate.
+	 */
 	public void setOnPullEventListener(OnPullEventListener<T> listener) {
-		mOnPullEventListener = listener;
+		mPullEventDispatcher.clearListeners();
+		mPullEventDispatcher.addListener(listener);
+	}
+
+	/**
+	 * Add an OnPullEventListener for the Widget, in addition to any already
+	 * set.
+	 * 
+	 * @param listener - Listener to be used when the Widget has a pull event to
+	 *            propogate.
+	 */
+	public final void addOnPullEventListener(OnPullEventListener<T> listener) {
+		mPullEventDispatcher.addListener(listener);
+	}
+
+	/**
+	 * Remove an OnPullEventListener which was previously set or added.
+	 * 
+	 * @param listener - Listener to remove
+	 */
+	public final void removeOnPullEventListener(OnPullEventListener<T> listener) {
+		mPullEventDispatcher.removeListener(listener);
+	}
+
+	/**
+	 * Get how the OnPullEventListeners are called
+	 * 
+	 * @return The PullEventDispatchMode currently in use
+	 */
+	public final PullEventDispatchMode getPullEventDispatchMode() {
+		return mPullEventDispatcher.getDispatchMode();
+	}
+
+	/**
+	 * Set how the OnPullEventListeners are called. By default they are called
+	 * synchronously, from the touch handling. A slow listener can instead be
+	 * called once per frame, or on a background thread, so that it doesn't
+	 * delay the drag.
+	 * 
+	 * @param mode - PullEventDispatchMode to use
+	 */
+	public final void setPullEventDispatchMode(PullEventDispatchMode mode) {
+		mPullEventDispatcher.setDispatchMode(mode);
+	}
+
+	/**
+	 * Show an overlay of the work done by this View in the last second, such
+	 * as layouts and header scrolls, and the last frame time. See
+	 * {@link DebugHud}. If no PerformanceCounters have been set, this sets
+	 * some. This can also be enabled from XML with <code>ptrDebugHud</code>.
+	 * 
+	 * @param enabled - Whether to show the HUD
+	 */
+	public final void setDebugHudEnabled(boolean enabled) {
+		if (enabled == isDebugHudEnabled()) {
+			return;
+		}
+
+		if (enabled) {
+			mDebugHud = new DebugHud(getContext());
+			if (null == mPerformanceCounters) {
+				mPerformanceCounters = new PerformanceCounters();
+			}
+		} else {
+			mDebugHud = null;
+			removeCallbacks(mDebugHudRedrawRunnable);
+			mDebugHudRedrawPending = false;
+		}
+		invalidate();
+	}
+
+	/**
+	 * Set PerformanceCounters to count the work done by this View, such as
+	 * layouts and invalidations per MOVE event. Counting is disabled by
+	 * default.
+	 * 
+	 * @param counters - PerformanceCounters to count into, or null to disable
+	 *            counting
+	 */
+	public final void setPerformanceCounters(PerformanceCounters counters) {
+		mPerformanceCounters = counters;
+	}
+
+	@Override
+	public void requestLayout() {
+		// Called from View's constructor, before our fields are set
+		if (null != mPerformanceCounters) {
+			mPerformanceCounters.mRequestLayouts++;
+		}
+		super.requestLayout();
 	}
 
 	@Override
@@ -445,6 +722,30 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		mOnRefreshListener = null;
 	}
 
+	/**
+	 * Set OnRefreshRestoredListener for the Widget. If set, a View restored
+	 * while refreshing asks the listener whether the refresh is still running,
+	 * rather than starting a new refresh.
+	 * 
+	 * @param listener - Listener to be used when the Widget is restored while
+	 *            refreshing
+	 */
+	public final void setOnRefreshRestoredListener(OnRefreshRestoredListener<T> listener) {
+		mOnRefreshRestoredListener = listener;
+	}
+
+	/**
+	 * Set OnSpeculativeRefreshListener for the Widget. This is told as soon
+	 * as the user has pulled far enough to refresh, so that the refresh can be
+	 * started before they release. Disabled by default.
+	 * 
+	 * @param listener - Listener to be used, or null to disable
+	 */
+	public final void setOnSpeculativeRefreshListener(OnSpeculativeRefreshListener<T> listener) {
+		mOnSpeculativeRefreshListener = listener;
+		mSpeculativeRefreshStarted = false;
+	}
+
 	/**
 	 * @deprecated You should now call this method on the result of
 	 *             {@link #getLoadingLayoutProxy()}.
@@ -525,6 +826,27 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		mScrollAnimationInterpolator = interpolator;
 	}
 
+	/**
+	 * Sets whether the Last Updated label should automatically show the time
+	 * since the last completed refresh (e.g. "3 minutes ago"). The time is
+	 * recorded when {@link #onRefreshComplete()} is called, and the label is
+	 * kept up to date while it is visible. Default is false.
+	 * 
+	 * @param show - true if you want the relative Last Updated label
+	 */
+	public final void setShowLastUpdatedTime(boolean show) {
+		if (show != mShowLastUpdatedTime) {
+			mShowLastUpdatedTime = show;
+			if (show) {
+				if (mLastRefreshTime > 0) {
+					setLoadingLayoutsLastUpdatedTime(mLastRefreshTime);
+				}
+			} else {
+				setLoadingLayoutsLastUpdatedTime(0);
+			}
+		}
+	}
+
 	@Override
 	public final void setShowViewWhileRefreshing(boolean showView) {
 		mShowViewWhileRefreshing = showView;
@@ -536,35 +858,60 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 	 */
 	public abstract Orientation getPullToRefreshScrollDirection();
 
-	final void setState(State state, final boolean... params) {
+	final void setState(State state) {
+		setState(state, false);
+	}
+
+	final void setState(State state, final boolean doScroll) {
 		mState = state;
 		if (DEBUG) {
 			Log.d(LOG_TAG, "State: " + mState.name());
 		}
+		if (null != mPerformanceCounters) {
+			mPerformanceCounters.mStateChanges++;
+		}
+
+		// A Pull Event still waiting for the next frame would fight with the
+		// scroll to the new state
+		if (mPullEventPending && (state == State.RESET || isRefreshing())) {
+			removeCallbacks(mPullEventRunnable);
+			mPullEventPending = false;
+		}
 
 		switch (mState) {
 			case RESET:
+				mRefreshSessionId = 0;
+				mReattachingRefresh = false;
+				cancelSpeculativeRefresh();
 				onReset();
 				break;
 			case PULL_TO_REFRESH:
+				// The user has pulled back from the release point
+				cancelSpeculativeRefresh();
 				onPullToRefresh();
 				break;
 			case RELEASE_TO_REFRESH:
+				startSpeculativeRefresh();
 				onReleaseToRefresh();
 				break;
 			case REFRESHING:
 			case MANUAL_REFRESHING:
-				onRefreshing(params[0]);
+				// The speculative refresh, if any, has now become the real one
+				mSpeculativeRefreshStarted = false;
+
+				// A restored refresh keeps the session it was saved with
+				if (!mReattachingRefresh) {
+					mRefreshSessionId = nextRefreshSessionId();
+				}
+				onRefreshing(doScroll);
 				break;
 			case OVERSCROLLING:
 				// NO-OP
 				break;
 		}
 
-		// Call OnPullEventListener
-		if (null != mOnPullEventListener) {
-			mOnPullEventListener.onPullEvent(this, mState, mCurrentMode);
-		}
+		// Call OnPullEventListeners
+		mPullEventDispatcher.dispatch(mState, mCurrentMode);
 	}
 
 	/**
@@ -806,12 +1153,27 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 			mScrollingWhileRefreshingEnabled = bundle.getBoolean(STATE_SCROLLING_REFRESHING_ENABLED, false);
 			mShowViewWhileRefreshing = bundle.getBoolean(STATE_SHOW_REFRESHING_VIEW, true);
 
+			mLastRefreshTime = bundle.getLong(STATE_LAST_REFRESH_TIME, 0);
+			if (mShowLastUpdatedTime && mLastRefreshTime > 0) {
+				setLoadingLayoutsLastUpdatedTime(mLastRefreshTime);
+			}
+
 			// Let super Restore Itself
 			super.onRestoreInstanceState(bundle.getParcelable(STATE_SUPER));
 
 			State viewState = State.mapIntToValue(bundle.getInt(STATE_STATE, 0));
 			if (viewState == State.REFRESHING || viewState == State.MANUAL_REFRESHING) {
-				setState(viewState, true);
+				final long sessionId = bundle.getLong(STATE_REFRESH_SESSION_ID, 0);
+
+				if (null == mOnRefreshRestoredListener) {
+					// Legacy behaviour, start a new refresh
+					setState(viewState, true);
+				} else if (mOnRefreshRestoredListener.onRefreshRestored(this, sessionId)) {
+					// The refresh is still running, so just show it
+					mRefreshSessionId = sessionId;
+					mReattachingRefresh = true;
+					setState(viewState, true);
+				}
 			}
 
 			// Now let derivative classes restore their state
@@ -835,6 +1197,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		bundle.putInt(STATE_CURRENT_MODE, mCurrentMode.getIntValue());
 		bundle.putBoolean(STATE_SCROLLING_REFRESHING_ENABLED, mScrollingWhileRefreshingEnabled);
 		bundle.putBoolean(STATE_SHOW_REFRESHING_VIEW, mShowViewWhileRefreshing);
+		bundle.putLong(STATE_LAST_REFRESH_TIME, mLastRefreshTime);
+		bundle.putLong(STATE_REFRESH_SESSION_ID, mRefreshSessionId);
 		bundle.putParcelable(STATE_SUPER, super.onSaveInstanceState());
 
 		return bundle;
@@ -868,7 +1232,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 
 	/**
 	 * Re-measure the Loading Views height, and adjust internal padding as
-	 * necessary
+	 * necessary. Loading Views which have been temporarily moved out of this
+	 * layout by a derivative class are not resized.
 	 */
 	protected final void refreshLoadingViewsSize() {
 		final int maximumPullScroll = (int) (getMaximumPullScroll() * 1.2f);
@@ -881,14 +1246,18 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		switch (getPullToRefreshScrollDirection()) {
 			case HORIZONTAL:
 				if (mMode.showHeaderLoadingLayout()) {
-					mHeaderLayout.setWidth(maximumPullScroll);
+					if (this == mHeaderLayout.getParent()) {
+						mHeaderLayout.setWidth(maximumPullScroll);
+					}
 					pLeft = -maximumPullScroll;
 				} else {
 					pLeft = 0;
 				}
 
 				if (mMode.showFooterLoadingLayout()) {
-					mFooterLayout.setWidth(maximumPullScroll);
+					if (this == mFooterLayout.getParent()) {
+						mFooterLayout.setWidth(maximumPullScroll);
+					}
 					pRight = -maximumPullScroll;
 				} else {
 					pRight = 0;
@@ -897,14 +1266,18 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 
 			case VERTICAL:
 				if (mMode.showHeaderLoadingLayout()) {
-					mHeaderLayout.setHeight(maximumPullScroll);
+					if (this == mHeaderLayout.getParent()) {
+						mHeaderLayout.setHeight(maximumPullScroll);
+					}
 					pTop = -maximumPullScroll;
 				} else {
 					pTop = 0;
 				}
 
 				if (mMode.showFooterLoadingLayout()) {
-					mFooterLayout.setHeight(maximumPullScroll);
+					if (this == mFooterLayout.getParent()) {
+						mFooterLayout.setHeight(maximumPullScroll);
+					}
 					pBottom = -maximumPullScroll;
 				} else {
 					pBottom = 0;
@@ -949,6 +1322,9 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		if (DEBUG) {
 			Log.d(LOG_TAG, "setHeaderScroll: " + value);
 		}
+		if (null != mPerformanceCounters) {
+			mPerformanceCounters.mHeaderScrolls++;
+		}
 
 		// Clamp value to with pull scroll range
 		final int maximumPullScroll = getMaximumPullScroll();
@@ -1059,6 +1435,12 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 	}
 
 	private void callRefreshListener() {
+		// If we've reattached to a running refresh, it has already been called
+		if (mReattachingRefresh) {
+			mReattachingRefresh = false;
+			return;
+		}
+
 		if (null != mOnRefreshListener) {
 			mOnRefreshListener.onRefresh(this);
 		} else if (null != mOnRefreshListener2) {
@@ -1070,6 +1452,17 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		}
 	}
 
+	private static long sLastRefreshSessionId;
+
+	/**
+	 * Returns a new session ID. These are based on the current time so that
+	 * they stay unique if the process is restarted.
+	 */
+	private static synchronized long nextRefreshSessionId() {
+		sLastRefreshSessionId = Math.max(System.currentTimeMillis(), sLastRefreshSessionId + 1);
+		return sLastRefreshSessionId;
+	}
+
 	@SuppressWarnings("deprecation")
 	private void init(Context context, AttributeSet attrs) {
 		switch (getPullToRefreshScrollDirection()) {
@@ -1084,6 +1477,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 
 		setGravity(Gravity.CENTER);
 
+		mPullEventDispatcher = new PullEventDispatcher<T>(this);
+
 		ViewConfiguration config = ViewConfiguration.get(context);
 		mTouchSlop = config.getScaledTouchSlop();
 
@@ -1133,6 +1528,14 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 					R.styleable.PullToRefresh_ptrScrollingWhileRefreshingEnabled, false);
 		}
 
+		if (a.hasValue(R.styleable.PullToRefresh_ptrShowLastUpdatedTime)) {
+			mShowLastUpdatedTime = a.getBoolean(R.styleable.PullToRefresh_ptrShowLastUpdatedTime, false);
+		}
+
+		if (a.getBoolean(R.styleable.PullToRefresh_ptrDebugHud, false)) {
+			setDebugHudEnabled(true);
+		}
+
 		// Let the derivative classes have a go at handling attributes, then
 		// recycle them...
 		handleStyledAttributes(a);
@@ -1142,6 +1545,48 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		updateUIForMode();
 	}
 
+	/**
+	 * Tells our PullToRefresh ancestors which edges we can pull from for the
+	 * current gesture. Ancestors which pull in the same direction then leave
+	 * drags towards those edges to us, but can still pull from the others.
+	 */
+	private void claimEdgesWithAncestors() {
+		final PullToRefreshBase<?> ancestor = findPullToRefreshAncestor(this);
+		if (null == ancestor) {
+			return;
+		}
+
+		final boolean claimStart, claimEnd;
+		if (!mScrollingWhileRefreshingEnabled && isRefreshing()) {
+			// We eat all MOVE events while refreshing
+			claimStart = claimEnd = true;
+		} else {
+			claimStart = mMode.showHeaderLoadingLayout() && isReadyForPullStart();
+			claimEnd = mMode.showFooterLoadingLayout() && isReadyForPullEnd();
+		}
+
+		if (claimStart || claimEnd) {
+			final Orientation direction = getPullToRefreshScrollDirection();
+			for (PullToRefreshBase<?> view = ancestor; null != view; view = findPullToRefreshAncestor(view)) {
+				if (view.getPullToRefreshScrollDirection() == direction) {
+					view.mNestedClaimStart |= claimStart;
+					view.mNestedClaimEnd |= claimEnd;
+				}
+			}
+		}
+	}
+
+	private static PullToRefreshBase<?> findPullToRefreshAncestor(View view) {
+		ViewParent parent = view.getParent();
+		while (null != parent) {
+			if (parent instanceof PullToRefreshBase) {
+				return (PullToRefreshBase<?>) parent;
+			}
+			parent = parent.getParent();
+		}
+		return null;
+	}
+
 	private boolean isReadyForPull() {
 		switch (mMode) {
 			case PULL_FROM_START:
@@ -1155,6 +1600,78 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		}
 	}
 
+	private void startSpeculativeRefresh() {
+		if (null != mOnSpeculativeRefreshListener && !mSpeculativeRefreshStarted) {
+			mSpeculativeRefreshStarted = true;
+			mOnSpeculativeRefreshListener.onSpeculativeRefreshStart(this, mCurrentMode);
+		}
+	}
+
+	private void cancelSpeculativeRefresh() {
+		if (mSpeculativeRefreshStarted) {
+			mSpeculativeRefreshStarted = false;
+			mOnSpeculativeRefreshListener.onSpeculativeRefreshCancel(this);
+		}
+	}
+
+	/**
+	 * On Jelly Bean and above, the Pull Event is run once per frame (with the
+	 * latest position) from an animation callback. These run straight after
+	 * the frame's input has been handled, so this doesn't add any latency.
+	 * Earlier platforms don't have per frame callbacks, so we action every
+	 * event straight away, as we also do when the PerformanceCounters ask for
+	 * it.
+	 */
+	private void schedulePullEvent() {
+		final PerformanceCounters counters = mPerformanceCounters;
+		if (VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN
+				&& (null == counters || !counters.isImmediatePullEventsEnabled())) {
+			if (!mPullEventPending) {
+				mPullEventPending = true;
+				ViewCompat.postOnAnimation(this, mPullEventRunnable);
+			}
+		} else {
+			pullEvent();
+		}
+	}
+
+	/**
+	 * Actions any Pull Event which is waiting for the next frame now. On Jelly
+	 * Bean and above, MOVE events are applied once per frame, so this is used
+	 * on release, and by tests, to include the work of the last MOVE.
+	 */
+	final void flushPendingPullEvent() {
+		if (mPullEventPending) {
+			removeCallbacks(mPullEventRunnable);
+			mPullEventPending = false;
+			countedPullEvent();
+		}
+	}
+
+	/**
+	 * Runs a deferred Pull Event, counting its work as part of the MOVE
+	 * handling.
+	 */
+	private void countedPullEvent() {
+		final PerformanceCounters counters = mPerformanceCounters;
+		if (null == counters) {
+			pullEvent();
+			return;
+		}
+
+		counters.onWorkStart();
+		pullEvent();
+		counters.onWorkEnd();
+	}
+
+	/**
+	 * setLastUpdatedTime() isn't part of {@link ILoadingLayout} (so that
+	 * existing implementations don't break), so this uses the proxy directly.
+	 */
+	private void setLoadingLayoutsLastUpdatedTime(long time) {
+		createLoadingLayoutProxy(true, true).setLastUpdatedTime(time);
+	}
+
 	/**
 	 * Actions a Pull Event
 	 * 
@@ -1178,22 +1695,14 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 				break;
 		}
 
-		switch (mCurrentMode) {
-			case PULL_FROM_END:
-				newScrollValue = Math.round(Math.max(initialMotionValue - lastMotionValue, 0) / FRICTION);
-				itemDimension = getFooterSize();
-				break;
-			case PULL_FROM_START:
-			default:
-				newScrollValue = Math.round(Math.min(initialMotionValue - lastMotionValue, 0) / FRICTION);
-				itemDimension = getHeaderSize();
-				break;
-		}
+		final boolean fromEnd = mCurrentMode == Mode.PULL_FROM_END;
+		newScrollValue = GestureMath.computePullScroll(initialMotionValue, lastMotionValue, fromEnd, FRICTION);
+		itemDimension = fromEnd ? getFooterSize() : getHeaderSize();
 
 		setHeaderScroll(newScrollValue);
 
 		if (newScrollValue != 0 && !isRefreshing()) {
-			float scale = Math.abs(newScrollValue) / (float) itemDimension;
+			float scale = GestureMath.computePullScale(newScrollValue, itemDimension);
 			switch (mCurrentMode) {
 				case PULL_FROM_END:
 					mFooterLayout.onPull(scale);
@@ -1204,10 +1713,9 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 					break;
 			}
 
-			if (mState != State.PULL_TO_REFRESH && itemDimension >= Math.abs(newScrollValue)) {
-				setState(State.PULL_TO_REFRESH);
-			} else if (mState == State.PULL_TO_REFRESH && itemDimension < Math.abs(newScrollValue)) {
-				setState(State.RELEASE_TO_REFRESH);
+			final int newState = PullStateMachine.resolvePullState(mState.getIntValue(), newScrollValue, itemDimension);
+			if (newState != mState.getIntValue()) {
+				setState(State.mapIntToValue(newState));
 			}
 		}
 	}
@@ -1286,6 +1794,32 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		});
 	}
 
+	public static enum PullEventDispatchMode {
+
+		/**
+		 * Listeners are called straight away, from the touch handling. This
+		 * is the default.
+		 */
+		SYNCHRONOUS,
+
+		/**
+		 * Events are queued, and the listeners are called with them once per
+		 * frame, after the touch handling. Repeated events within a frame are
+		 * coalesced.
+		 */
+		PER_FRAME,
+
+		/**
+		 * Listeners are called on a shared background thread. Listeners must
+		 * not touch the View hierarchy in this mode.
+		 */
+		BACKGROUND;
+
+		static PullEventDispatchMode getDefault() {
+			return SYNCHRONOUS;
+		}
+	}
+
 	public static enum AnimationStyle {
 		/**
 		 * This is the default for Android-PullToRefresh. Allows you to use any
@@ -1384,7 +1918,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		 * @return Mode that modeInt maps to, or PULL_FROM_START by default.
 		 */
 		static Mode mapIntToValue(final int modeInt) {
-			for (Mode value : Mode.values()) {
+			// Iterate over a cached copy, as values() allocates a new array
+			for (Mode value : VALUES) {
 				if (modeInt == value.getIntValue()) {
 					return value;
 				}
@@ -1398,6 +1933,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 			return PULL_FROM_START;
 		}
 
+		static final Mode[] VALUES = values();
+
 		private int mIntValue;
 
 		// The modeInt values need to match those from attrs.xml
@@ -1517,6 +2054,62 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 
 	}
 
+	/**
+	 * Listener which is called when the View is restored from a saved state
+	 * in which it was refreshing, such as after a configuration change. See
+	 * {@link PullToRefreshBase#setOnRefreshRestoredListener}.
+	 */
+	public static interface OnRefreshRestoredListener<V extends View> {
+
+		/**
+		 * Called from <code>onRestoreInstanceState()</code> when the View
+		 * was refreshing when it was saved.
+		 * 
+		 * @param refreshView - View which has been restored
+		 * @param sessionId - Session ID of the refresh which was running, as
+		 *            given by {@link PullToRefreshBase#getRefreshSessionId()}
+		 * @return true if the refresh is still running, in which case the View
+		 *         is shown refreshing again (without calling the
+		 *         OnRefreshListener). false if the refresh has gone, in which
+		 *         case the View stays reset.
+		 */
+		public boolean onRefreshRestored(final PullToRefreshBase<V> refreshView, long sessionId);
+
+	}
+
+	/**
+	 * Listener which is told as soon as the user has pulled far enough to
+	 * refresh, before they release. This allows the work for a refresh (such
+	 * as a network request) to be started early, so that it overlaps with the
+	 * rest of the gesture and the scroll to the refreshing position. See
+	 * {@link PullToRefreshBase#setOnSpeculativeRefreshListener}.
+	 * <p/>
+	 * If the user then releases, the OnRefreshListener is called as normal,
+	 * and should pick up the work which has already been started.
+	 */
+	public static interface OnSpeculativeRefreshListener<V extends View> {
+
+		/**
+		 * Called when the View moves into {@link State#RELEASE_TO_REFRESH}.
+		 * 
+		 * @param refreshView - View which is being pulled
+		 * @param direction - One of {@link Mode#PULL_FROM_START} or
+		 *            {@link Mode#PULL_FROM_END}
+		 */
+		public void onSpeculativeRefreshStart(final PullToRefreshBase<V> refreshView, Mode direction);
+
+		/**
+		 * Called if, after
+		 * {@link #onSpeculativeRefreshStart(PullToRefreshBase, Mode)}, the user
+		 * pulls back from the release point, or the View is reset without
+		 * refreshing. Any work which was started should be cancelled.
+		 * 
+		 * @param refreshView - View which was being pulled
+		 */
+		public void onSpeculativeRefreshCancel(final PullToRefreshBase<V> refreshView);
+
+	}
+
 	public static enum Orientation {
 		VERTICAL, HORIZONTAL;
 	}
@@ -1527,36 +2120,36 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		 * When the UI is in a state which means that user is not interacting
 		 * with the Pull-to-Refresh function.
 		 */
-		RESET(0x0),
+		RESET(PullStateMachine.STATE_RESET),
 
 		/**
 		 * When the UI is being pulled by the user, but has not been pulled far
 		 * enough so that it refreshes when released.
 		 */
-		PULL_TO_REFRESH(0x1),
+		PULL_TO_REFRESH(PullStateMachine.STATE_PULL_TO_REFRESH),
 
 		/**
 		 * When the UI is being pulled by the user, and <strong>has</strong>
 		 * been pulled far enough so that it will refresh when released.
 		 */
-		RELEASE_TO_REFRESH(0x2),
+		RELEASE_TO_REFRESH(PullStateMachine.STATE_RELEASE_TO_REFRESH),
 
 		/**
 		 * When the UI is currently refreshing, caused by a pull gesture.
 		 */
-		REFRESHING(0x8),
+		REFRESHING(PullStateMachine.STATE_REFRESHING),
 
 		/**
 		 * When the UI is currently refreshing, caused by a call to
 		 * {@link PullToRefreshBase#setRefreshing() setRefreshing()}.
 		 */
-		MANUAL_REFRESHING(0x9),
+		MANUAL_REFRESHING(PullStateMachine.STATE_MANUAL_REFRESHING),
 
 		/**
 		 * When the UI is currently overscrolling, caused by a fling on the
 		 * Refreshable View.
 		 */
-		OVERSCROLLING(0x10);
+		OVERSCROLLING(PullStateMachine.STATE_OVERSCROLLING);
 
 		/**
 		 * Maps an int to a specific state. This is needed when saving state.
@@ -1565,7 +2158,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 		 * @return State that stateInt maps to
 		 */
 		static State mapIntToValue(final int stateInt) {
-			for (State value : State.values()) {
+			// Iterate over a cached copy, as values() allocates a new array
+			for (State value : VALUES) {
 				if (stateInt == value.getIntValue()) {
 					return value;
 				}
@@ -1575,6 +2169,8 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 			return RESET;
 		}
 
+		static final State[] VALUES = values();
+
 		private int mIntValue;
 
 		State(int intValue) {
@@ -1616,18 +2212,15 @@ public abstract class PullToRefreshBase<T extends View> extends LinearLayout imp
 				mStartTime = System.currentTimeMillis();
 			} else {
 
-				/**
-				 * We do do all calculations in long to reduce software float
-				 * calculations. We use 1000 as it gives us good accuracy and
-				 * small rounding errors
-				 */
-				long normalizedTime = (1000 * (System.currentTimeMillis() - mStartTime)) / mDuration;
-				normalizedTime = Math.max(Math.min(normalizedTime, 1000), 0);
-
-				final int deltaY = Math.round((mScrollFromY - mScrollToY)
-						* mInterpolator.getInterpolation(normalizedTime / 1000f));
-				mCurrentY = mScrollFromY - deltaY;
+				final long normalizedTime = SmoothScrollMath.computeNormalizedTime(System.currentTimeMillis()
+						- mStartTime, mDuration);
+				mCurrentY = SmoothScrollMath.computeScrollValue(mScrollFromY, mScrollToY,
+						mInterpolator.getInterpolation(SmoothScrollMath.toInterpolatorInput(normalizedTime)));
 				setHeaderScroll(mCurrentY);
+
+				if (null != mPerformanceCounters) {
+					mPerformanceCounters.mSmoothScrollFrames++;
+				}
 			}
 
 			// If we're not at the target Y, keep going...
@@ -21,12 +21,15 @@ import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.util.AttributeSet;
 import android.view.View;
+import android.widget.Adapter;
 import android.widget.GridView;
 
 import com.handmark.pulltorefresh.library.internal.EmptyViewMethodAccessor;
 
 public class PullToRefreshGridView extends PullToRefreshAdapterViewBase<GridView> {
 
+	private int mPrefetchRowCount;
+
 	public PullToRefreshGridView(Context context) {
 		super(context);
 	}
@@ -48,6 +51,90 @@ public class PullToRefreshGridView extends PullToRefreshAdapterViewBase<GridView
 		return Orientation.VERTICAL;
 	}
 
+	/**
+	 * @return The number of rows before the last row at which the
+	 *         {@link OnLastItemVisibleListener} is called.
+	 */
+	public final int getPrefetchRowCount() {
+		return mPrefetchRowCount;
+	}
+
+	/**
+	 * Sets how many rows before the last row the
+	 * {@link OnLastItemVisibleListener} should be called, so that the next
+	 * page can be fetched before the user reaches the end of the grid. The
+	 * default is 0, which means that it is called once the last row (which may
+	 * only be partially filled) is visible.
+	 * 
+	 * @param rows - Number of rows to prefetch
+	 */
+	public final void setPrefetchRowCount(int rows) {
+		mPrefetchRowCount = Math.max(0, rows);
+	}
+
+	@Override
+	protected boolean hasReachedLastItem(int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		if (totalItemCount <= 0) {
+			return false;
+		}
+
+		final int numColumns = getNumColumnsCompat();
+		final int lastVisibleRow = (firstVisibleItem + visibleItemCount - 1) / numColumns;
+		final int lastRow = (totalItemCount - 1) / numColumns;
+
+		return lastVisibleRow >= lastRow - mPrefetchRowCount;
+	}
+
+	@Override
+	protected boolean isReadyForPullEnd() {
+		final GridView gv = mRefreshableView;
+		final Adapter adapter = gv.getAdapter();
+
+		if (null == adapter || adapter.isEmpty()) {
+			return true;
+		}
+
+		/**
+		 * The last row may only be partially filled, so we check from the
+		 * first position of the last row, rather than the last position - 1.
+		 */
+		final int lastItemPosition = gv.getCount() - 1;
+		final int lastRowStart = lastItemPosition - (lastItemPosition % getNumColumnsCompat());
+		final int lastVisiblePosition = gv.getLastVisiblePosition();
+
+		if (lastVisiblePosition >= lastRowStart) {
+			final View lastVisibleChild = gv.getChildAt(lastVisiblePosition - gv.getFirstVisiblePosition());
+			if (null != lastVisibleChild) {
+				return lastVisibleChild.getBottom() <= gv.getBottom();
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * GridView.getNumColumns() is only available from Honeycomb, so on older
+	 * platforms we count the children which share the first child's row.
+	 */
+	private int getNumColumnsCompat() {
+		final GridView gv = mRefreshableView;
+		if (VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB) {
+			return Math.max(1, SDK11.getNumColumns(gv));
+		}
+
+		final int childCount = gv.getChildCount();
+		if (childCount == 0) {
+			return 1;
+		}
+
+		final int firstRowTop = gv.getChildAt(0).getTop();
+		int columns = 1;
+		while (columns < childCount && gv.getChildAt(columns).getTop() == firstRowTop) {
+			columns++;
+		}
+		return columns;
+	}
+
 	@Override
 	protected final GridView createRefreshableView(Context context, AttributeSet attrs) {
 		final GridView gv;
@@ -99,4 +186,12 @@ public class PullToRefreshGridView extends PullToRefreshAdapterViewBase<GridView
 			return returnValue;
 		}
 	}
+
+	@TargetApi(11)
+	static class SDK11 {
+
+		public static int getNumColumns(GridView gridView) {
+			return gridView.getNumColumns();
+		}
+	}
 }
@@ -19,27 +19,50 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.ListAdapter;
 import android.widget.ListView;
 
 import com.handmark.pulltorefresh.library.internal.EmptyViewMethodAccessor;
 import com.handmark.pulltorefresh.library.internal.LoadingLayout;
+import com.handmark.pulltorefresh.library.internal.ViewCompat;
 
 public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView> {
 
-	private LoadingLayout mHeaderLoadingView;
-	private LoadingLayout mFooterLoadingView;
-
+	private FrameLayout mLvHeaderLoadingFrame;
 	private FrameLayout mLvFooterLoadingFrame;
 
+	/**
+	 * The LoadingLayout which has currently been moved into the ListView
+	 * header/footer frame, or null if they are all in their normal place.
+	 */
+	private LoadingLayout mListViewLoadingLayout;
+	private View mLoadingLayoutPlaceholder;
+
+	/**
+	 * Copy of the moved LoadingLayout's background used by the placeholder,
+	 * and the Drawable it was created from.
+	 */
+	private Drawable mPlaceholderBackground;
+	private Drawable mPlaceholderBackgroundSource;
+
 	private boolean mListViewExtrasEnabled;
+	private boolean mListViewExtrasOverlayEnabled;
+
+	/**
+	 * Padding which has been added to the ListView so that the first/last row
+	 * isn't covered by the overlay Loading View.
+	 */
+	private int mOverlayInset;
+	private boolean mOverlayAtEnd;
 
 	public PullToRefreshListView(Context context) {
 		super(context);
@@ -62,6 +85,42 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 		return Orientation.VERTICAL;
 	}
 
+	/**
+	 * @return true if the ListView extras show the refreshing view as an
+	 *         overlay, rather than as a ListView header/footer view.
+	 */
+	public final boolean isListViewExtrasOverlayEnabled() {
+		return mListViewExtrasOverlayEnabled;
+	}
+
+	/**
+	 * Sets whether the ListView extras show the refreshing view as an overlay
+	 * pinned to the first/last row, rather than adding header and footer
+	 * views to the ListView. This keeps the loading views out of the adapter,
+	 * so that it isn't wrapped in a {@link android.widget.HeaderViewListAdapter
+	 * HeaderViewListAdapter} and the adapter positions are not offset.
+	 * <p/>
+	 * The overlay is pinned to the first/last row using translationY, which
+	 * is only available from Honeycomb (API 11). On older devices it stays at
+	 * the top/bottom edge of the ListView, over the rows, while refreshing.
+	 * <p/>
+	 * This needs to be called before an adapter is set on the ListView. The
+	 * default is false, and it can also be set via the
+	 * <code>ptrListViewExtrasOverlay</code> attribute.
+	 * 
+	 * @param enabled - true if the overlay should be used
+	 * @throws IllegalStateException if an adapter has already been set
+	 */
+	public final void setListViewExtrasOverlayEnabled(boolean enabled) {
+		if (enabled == mListViewExtrasOverlayEnabled) {
+			return;
+		}
+		if (null != mRefreshableView.getAdapter()) {
+			throw new IllegalStateException("setListViewExtrasOverlayEnabled must be called before setAdapter");
+		}
+		mListViewExtrasOverlayEnabled = enabled;
+	}
+
 	@Override
 	protected void onRefreshing(final boolean doScroll) {
 		/**
@@ -76,43 +135,38 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 
 		super.onRefreshing(false);
 
-		final LoadingLayout origLoadingView, listViewLoadingView, oppositeListViewLoadingView;
-		final int selection, scrollToY;
+		final LoadingLayout loadingLayout;
+		final boolean atEnd;
+		final int selection, scrollToY, loadingLayoutSize;
 
 		switch (getCurrentMode()) {
 			case MANUAL_REFRESH_ONLY:
 			case PULL_FROM_END:
-				origLoadingView = getFooterLayout();
-				listViewLoadingView = mFooterLoadingView;
-				oppositeListViewLoadingView = mHeaderLoadingView;
+				loadingLayout = getFooterLayout();
+				atEnd = true;
 				selection = mRefreshableView.getCount() - 1;
-				scrollToY = getScrollY() - getFooterSize();
+				loadingLayoutSize = getFooterSize();
+				scrollToY = getScrollY() - loadingLayoutSize;
 				break;
 			case PULL_FROM_START:
 			default:
-				origLoadingView = getHeaderLayout();
-				listViewLoadingView = mHeaderLoadingView;
-				oppositeListViewLoadingView = mFooterLoadingView;
+				loadingLayout = getHeaderLayout();
+				atEnd = false;
 				selection = 0;
-				scrollToY = getScrollY() + getHeaderSize();
+				loadingLayoutSize = getHeaderSize();
+				scrollToY = getScrollY() + loadingLayoutSize;
 				break;
 		}
 
-		// Hide our original Loading View
-		origLoadingView.reset();
-		origLoadingView.hideAllViews();
+		// Move our Loading View into the ListView (or over it), where it keeps
+		// refreshing
+		moveLoadingLayoutToListView(loadingLayout, atEnd, loadingLayoutSize);
 
-		// Make sure the opposite end is hidden too
-		oppositeListViewLoadingView.setVisibility(View.GONE);
-
-		// Show the ListView Loading View and set it to refresh.
-		listViewLoadingView.setVisibility(View.VISIBLE);
-		listViewLoadingView.refreshing();
+		// The Loading View now lives in the ListView, so we need to disable
+		// the automatic visibility changes until we're reset
+		disableLoadingLayoutVisibilityChanges();
 
 		if (doScroll) {
-			// We need to disable the automatic visibility changes for now
-			disableLoadingLayoutVisibilityChanges();
-
 			// We scroll slightly so that the ListView's header/footer is at the
 			// same Y position as our normal header/footer
 			setHeaderScroll(scrollToY);
@@ -136,38 +190,28 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 			return;
 		}
 
-		final LoadingLayout originalLoadingLayout, listViewLoadingLayout;
-		final int scrollToHeight, selection;
-		final boolean scrollLvToEdge;
-
-		switch (getCurrentMode()) {
-			case MANUAL_REFRESH_ONLY:
-			case PULL_FROM_END:
-				originalLoadingLayout = getFooterLayout();
-				listViewLoadingLayout = mFooterLoadingView;
-				selection = mRefreshableView.getCount() - 1;
-				scrollToHeight = getFooterSize();
-				scrollLvToEdge = Math.abs(mRefreshableView.getLastVisiblePosition() - selection) <= 1;
-				break;
-			case PULL_FROM_START:
-			default:
-				originalLoadingLayout = getHeaderLayout();
-				listViewLoadingLayout = mHeaderLoadingView;
-				scrollToHeight = -getHeaderSize();
-				selection = 0;
-				scrollLvToEdge = Math.abs(mRefreshableView.getFirstVisiblePosition() - selection) <= 1;
-				break;
-		}
-
-		// If the ListView header loading layout is showing, then we need to
-		// flip so that the original one is showing instead
-		if (listViewLoadingLayout.getVisibility() == View.VISIBLE) {
-
-			// Set our Original View to Visible
-			originalLoadingLayout.showInvisibleViews();
+		// If the Loading View is in the ListView header/footer, then we need to
+		// move it back so that it is in its normal place
+		if (null != mListViewLoadingLayout) {
+			final int scrollToHeight, selection;
+			final boolean scrollLvToEdge;
+
+			switch (getCurrentMode()) {
+				case MANUAL_REFRESH_ONLY:
+				case PULL_FROM_END:
+					selection = mRefreshableView.getCount() - 1;
+					scrollToHeight = getFooterSize();
+					scrollLvToEdge = Math.abs(mRefreshableView.getLastVisiblePosition() - selection) <= 1;
+					break;
+				case PULL_FROM_START:
+				default:
+					scrollToHeight = -getHeaderSize();
+					selection = 0;
+					scrollLvToEdge = Math.abs(mRefreshableView.getFirstVisiblePosition() - selection) <= 1;
+					break;
+			}
 
-			// Hide the ListView Header/Footer
-			listViewLoadingLayout.setVisibility(View.GONE);
+			moveLoadingLayoutToContainer();
 
 			/**
 			 * Scroll so the View is at the same Y as the ListView
@@ -185,21 +229,21 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 	}
 
 	@Override
-	protected LoadingLayoutProxy createLoadingLayoutProxy(final boolean includeStart, final boolean includeEnd) {
-		LoadingLayoutProxy proxy = super.createLoadingLayoutProxy(includeStart, includeEnd);
+	protected void onRefreshableViewScroll(int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		super.onRefreshableViewScroll(firstVisibleItem, visibleItemCount, totalItemCount);
 
-		if (mListViewExtrasEnabled) {
-			final Mode mode = getMode();
-
-			if (includeStart && mode.showHeaderLoadingLayout()) {
-				proxy.addLayout(mHeaderLoadingView);
-			}
-			if (includeEnd && mode.showFooterLoadingLayout()) {
-				proxy.addLayout(mFooterLoadingView);
-			}
+		if (null != mListViewLoadingLayout && mOverlayInset != 0) {
+			updateOverlayPosition();
 		}
+	}
 
-		return proxy;
+	@Override
+	protected void updateUIForMode() {
+		// Make sure the Loading Views are back in their normal place before
+		// the super class re-adds them
+		moveLoadingLayoutToContainer();
+
+		super.updateUIForMode();
 	}
 
 	protected ListView createListView(Context context, AttributeSet attrs) {
@@ -228,20 +272,7 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 		mListViewExtrasEnabled = a.getBoolean(R.styleable.PullToRefresh_ptrListViewExtrasEnabled, true);
 
 		if (mListViewExtrasEnabled) {
-			final FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT,
-					FrameLayout.LayoutParams.WRAP_CONTENT, Gravity.CENTER_HORIZONTAL);
-
-			// Create Loading Views ready for use later
-			FrameLayout frame = new FrameLayout(getContext());
-			mHeaderLoadingView = createLoadingLayout(getContext(), Mode.PULL_FROM_START, a);
-			mHeaderLoadingView.setVisibility(View.GONE);
-			frame.addView(mHeaderLoadingView, lp);
-			mRefreshableView.addHeaderView(frame, null, false);
-
-			mLvFooterLoadingFrame = new FrameLayout(getContext());
-			mFooterLoadingView = createLoadingLayout(getContext(), Mode.PULL_FROM_END, a);
-			mFooterLoadingView.setVisibility(View.GONE);
-			mLvFooterLoadingFrame.addView(mFooterLoadingView, lp);
+			mListViewExtrasOverlayEnabled = a.getBoolean(R.styleable.PullToRefresh_ptrListViewExtrasOverlay, false);
 
 			/**
 			 * If the value for Scrolling While Refreshing hasn't been
@@ -253,6 +284,150 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 		}
 	}
 
+	/**
+	 * Moves <var>loadingLayout</var> from this layout into the ListView
+	 * header/footer frame, or over the ListView if the overlay is enabled. A
+	 * lightweight placeholder takes its place (and LayoutParams), so that the
+	 * rest of this layout is not affected.
+	 */
+	@SuppressWarnings("deprecation")
+	private void moveLoadingLayoutToListView(LoadingLayout loadingLayout, boolean atEnd, int loadingLayoutSize) {
+		if (loadingLayout == mListViewLoadingLayout) {
+			return;
+		}
+		moveLoadingLayoutToContainer();
+
+		if (null == mLoadingLayoutPlaceholder) {
+			mLoadingLayoutPlaceholder = new View(getContext());
+		}
+
+		// Keep the same background, as it can be seen while we scroll back
+		final Drawable background = loadingLayout.getBackground();
+		if (background != mPlaceholderBackgroundSource) {
+			mPlaceholderBackgroundSource = background;
+			if (null != background && null != background.getConstantState()) {
+				mPlaceholderBackground = background.getConstantState().newDrawable();
+			} else {
+				mPlaceholderBackground = null;
+			}
+		}
+		if (mLoadingLayoutPlaceholder.getBackground() != mPlaceholderBackground) {
+			mLoadingLayoutPlaceholder.setBackgroundDrawable(mPlaceholderBackground);
+		}
+
+		final int index = indexOfChild(loadingLayout);
+		final ViewGroup.LayoutParams lp = loadingLayout.getLayoutParams();
+		removeView(loadingLayout);
+		addViewInternal(mLoadingLayoutPlaceholder, index, lp);
+
+		// If the frames haven't been added yet (no adapter), use the overlay
+		final FrameLayout listViewLoadingFrame = atEnd ? mLvFooterLoadingFrame : mLvHeaderLoadingFrame;
+		if (mListViewExtrasOverlayEnabled || null == listViewLoadingFrame) {
+			getRefreshableViewWrapper().addView(loadingLayout, new FrameLayout.LayoutParams(
+					FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.WRAP_CONTENT,
+					atEnd ? Gravity.BOTTOM : Gravity.TOP));
+			setOverlayInset(loadingLayoutSize, atEnd);
+		} else {
+			listViewLoadingFrame.addView(loadingLayout, new FrameLayout.LayoutParams(
+					FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.WRAP_CONTENT,
+					Gravity.CENTER_HORIZONTAL));
+		}
+
+		loadingLayout.setVisibility(View.VISIBLE);
+		mListViewLoadingLayout = loadingLayout;
+	}
+
+	/**
+	 * Moves the LoadingLayout which is currently in the ListView back to its
+	 * normal place in this layout, replacing the placeholder.
+	 */
+	private void moveLoadingLayoutToContainer() {
+		final LoadingLayout loadingLayout = mListViewLoadingLayout;
+		if (null == loadingLayout) {
+			return;
+		}
+		mListViewLoadingLayout = null;
+
+		((ViewGroup) loadingLayout.getParent()).removeView(loadingLayout);
+		if (mOverlayInset != 0) {
+			setOverlayInset(0, mOverlayAtEnd);
+			ViewCompat.setTranslationY(loadingLayout, 0f);
+		}
+
+		final int index = indexOfChild(mLoadingLayoutPlaceholder);
+		final ViewGroup.LayoutParams lp = mLoadingLayoutPlaceholder.getLayoutParams();
+		removeView(mLoadingLayoutPlaceholder);
+		addViewInternal(loadingLayout, index, lp);
+
+		// Our size may have changed while the Loading View was away
+		refreshLoadingViewsSize();
+	}
+
+	/**
+	 * Adds <var>inset</var> padding to the ListView at the start or end, so
+	 * that the first/last row is not covered by the overlay. Any previous
+	 * inset is removed first. The rows are drawn into the padding once
+	 * scrolled, so the overlay can follow them. The ListView's own
+	 * clipToPadding value is restored once the inset is removed (this needs
+	 * our InternalListView, other ListViews are left clipping).
+	 */
+	private void setOverlayInset(int inset, boolean atEnd) {
+		final ListView lv = mRefreshableView;
+		int top = lv.getPaddingTop(), bottom = lv.getPaddingBottom();
+
+		// Remove the current inset
+		if (mOverlayAtEnd) {
+			bottom -= mOverlayInset;
+		} else {
+			top -= mOverlayInset;
+		}
+
+		// Now add the new one
+		if (atEnd) {
+			bottom += inset;
+		} else {
+			top += inset;
+		}
+
+		mOverlayInset = inset;
+		mOverlayAtEnd = atEnd;
+
+		if (lv instanceof InternalListView) {
+			((InternalListView) lv).setOverlayInsetApplied(inset != 0);
+		}
+		lv.setPadding(lv.getPaddingLeft(), top, lv.getPaddingRight(), bottom);
+	}
+
+	/**
+	 * Keeps the overlay Loading View pinned to the first/last row of the
+	 * ListView, moving it out of view once that row has been scrolled away.
+	 */
+	private void updateOverlayPosition() {
+		final ListView lv = mRefreshableView;
+		final LoadingLayout overlay = mListViewLoadingLayout;
+		final int childCount = lv.getChildCount();
+
+		float offset = 0f;
+		if (childCount > 0) {
+			if (mOverlayAtEnd) {
+				if (lv.getLastVisiblePosition() == lv.getCount() - 1) {
+					final int listBottom = lv.getHeight() - lv.getPaddingBottom();
+					offset = Math.max(0, lv.getChildAt(childCount - 1).getBottom() - listBottom);
+				} else {
+					offset = overlay.getHeight();
+				}
+			} else {
+				if (lv.getFirstVisiblePosition() == 0) {
+					offset = Math.min(0, lv.getChildAt(0).getTop() - lv.getPaddingTop());
+				} else {
+					offset = -overlay.getHeight();
+				}
+			}
+		}
+
+		ViewCompat.setTranslationY(overlay, offset);
+	}
+
 	@TargetApi(9)
 	final class InternalListViewSDK9 extends InternalListView {
 
@@ -276,7 +451,14 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 
 	protected class InternalListView extends ListView implements EmptyViewMethodAccessor {
 
-		private boolean mAddedLvFooter = false;
+		private boolean mAddedLvFrames = false;
+
+		/**
+		 * The clipToPadding value set by the app (inverted, as it's set from
+		 * the super constructor, before field initializers have run).
+		 */
+		private boolean mClipToPaddingDisabled;
+		private boolean mOverlayInsetApplied;
 
 		public InternalListView(Context context, AttributeSet attrs) {
 			super(context, attrs);
@@ -311,12 +493,33 @@ public class PullToRefreshListView extends PullToRefreshAdapterViewBase<ListView
 			}
 		}
 
+		@Override
+		public void setClipToPadding(boolean clipToPadding) {
+			mClipToPaddingDisabled = !clipToPadding;
+
+			// While the overlay inset is applied, the rows need to be drawn
+			// into the padding. The value is applied once it is removed.
+			if (!mOverlayInsetApplied) {
+				super.setClipToPadding(clipToPadding);
+			}
+		}
+
+		void setOverlayInsetApplied(boolean applied) {
+			mOverlayInsetApplied = applied;
+			super.setClipToPadding(!applied && !mClipToPaddingDisabled);
+		}
+
 		@Override
 		public void setAdapter(ListAdapter adapter) {
-			// Add the Footer View at the last possible moment
-			if (null != mLvFooterLoadingFrame && !mAddedLvFooter) {
+			// Add the Header/Footer Views at the last possible moment. They're
+			// not needed at all if the extras use the overlay.
+			if (mListViewExtrasEnabled && !mListViewExtrasOverlayEnabled && !mAddedLvFrames) {
+				mLvHeaderLoadingFrame = new FrameLayout(getContext());
+				addHeaderView(mLvHeaderLoadingFrame, null, false);
+
+				mLvFooterLoadingFrame = new FrameLayout(getContext());
 				addFooterView(mLvFooterLoadingFrame, null, false);
-				mAddedLvFooter = true;
+				mAddedLvFrames = true;
 			}
 
 			super.setAdapter(adapter);
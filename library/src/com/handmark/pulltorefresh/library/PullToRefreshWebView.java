@@ -22,16 +22,30 @@ import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.util.AttributeSet;
 import android.util.FloatMath;
+import android.view.MotionEvent;
+import android.webkit.JavascriptInterface;
 import android.webkit.WebChromeClient;
 import android.webkit.WebView;
+import android.webkit.WebViewClient;
 
 public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 
+	static final String JS_REFRESH_INTERFACE_PKG = "ptrWebView";
+
+	/**
+	 * Calls the page's refresh hook if it has one, otherwise asks us to reload
+	 * the page.
+	 */
+	static final String DEF_JS_IN_PAGE_REFRESH_CALL = "javascript:(function() {"
+			+ "if (typeof window.onPullToRefresh == 'function') { window.onPullToRefresh(); }"
+			+ "else { " + JS_REFRESH_INTERFACE_PKG + ".reloadPage(); }"
+			+ "})();";
+
 	private static final OnRefreshListener<WebView> defaultOnRefreshListener = new OnRefreshListener<WebView>() {
 
 		@Override
 		public void onRefresh(PullToRefreshBase<WebView> refreshView) {
-			refreshView.getRefreshableView().reload();
+			((PullToRefreshWebView) refreshView).refreshPage();
 		}
 
 	};
@@ -43,10 +57,25 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 			if (newProgress == 100) {
 				onRefreshComplete();
 			}
+			onPageLoadProgressChanged(newProgress);
+		}
+
+	};
+
+	private final WebViewClient defaultWebViewClient = new WebViewClient() {
+
+		@Override
+		public void onScaleChanged(WebView view, float oldScale, float newScale) {
+			updateContentExtent();
 		}
 
 	};
 
+	private boolean mInPageRefreshEnabled;
+	private InPageRefreshCallback mInPageRefreshCallback;
+
+	private int mContentExtent;
+
 	public PullToRefreshWebView(Context context) {
 		super(context);
 
@@ -55,6 +84,7 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 		 */
 		setOnRefreshListener(defaultOnRefreshListener);
 		mRefreshableView.setWebChromeClient(defaultWebChromeClient);
+		mRefreshableView.setWebViewClient(defaultWebViewClient);
 	}
 
 	public PullToRefreshWebView(Context context, AttributeSet attrs) {
@@ -65,6 +95,7 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 		 */
 		setOnRefreshListener(defaultOnRefreshListener);
 		mRefreshableView.setWebChromeClient(defaultWebChromeClient);
+		mRefreshableView.setWebViewClient(defaultWebViewClient);
 	}
 
 	public PullToRefreshWebView(Context context, Mode mode) {
@@ -75,6 +106,7 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 		 */
 		setOnRefreshListener(defaultOnRefreshListener);
 		mRefreshableView.setWebChromeClient(defaultWebChromeClient);
+		mRefreshableView.setWebViewClient(defaultWebViewClient);
 	}
 
 	public PullToRefreshWebView(Context context, Mode mode, AnimationStyle style) {
@@ -85,6 +117,16 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 		 */
 		setOnRefreshListener(defaultOnRefreshListener);
 		mRefreshableView.setWebChromeClient(defaultWebChromeClient);
+		mRefreshableView.setWebViewClient(defaultWebViewClient);
+	}
+
+	@Override
+	public boolean dispatchTouchEvent(MotionEvent event) {
+		// Catch any content changes which we haven't been told about
+		if (event.getAction() == MotionEvent.ACTION_DOWN) {
+			updateContentExtent();
+		}
+		return super.dispatchTouchEvent(event);
 	}
 
 	@Override
@@ -92,13 +134,66 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 		return Orientation.VERTICAL;
 	}
 
+	/**
+	 * @return true if refreshes are handled by the page itself.
+	 */
+	public final boolean isInPageRefreshEnabled() {
+		return mInPageRefreshEnabled;
+	}
+
+	/**
+	 * Sets whether a refresh should be handled by the page itself, rather than
+	 * reloading the whole page. When enabled, a refresh calls the page's
+	 * <code>window.onPullToRefresh()</code> function, which should update the
+	 * page's content and then call <code>ptrWebView.onRefreshComplete()</code>.
+	 * If the page doesn't define the function, it is reloaded as normal.
+	 * <p/>
+	 * This adds a Javascript interface to the WebView, so should be called
+	 * before the page is loaded. It has no effect if you've set your own
+	 * OnRefreshListener.
+	 * <p/>
+	 * Note that the interface is visible to every page loaded in the WebView,
+	 * not just your own. Before Jelly Bean MR1 (API 17), Javascript can also
+	 * use reflection on it to reach the rest of your app, so only enable this
+	 * if the WebView only loads content which you trust.
+	 * <p/>
+	 * Disabling removes the interface on Honeycomb and above. Before that it
+	 * can't be removed, but it then ignores any calls.
+	 * 
+	 * @param enabled - true to enable in-page refreshes
+	 */
+	public final void setInPageRefreshEnabled(boolean enabled) {
+		if (enabled && null == mInPageRefreshCallback) {
+			mInPageRefreshCallback = new InPageRefreshCallback();
+			mRefreshableView.addJavascriptInterface(mInPageRefreshCallback, JS_REFRESH_INTERFACE_PKG);
+		} else if (!enabled && null != mInPageRefreshCallback
+				&& VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB) {
+			SDK11.removeJavascriptInterface(mRefreshableView, JS_REFRESH_INTERFACE_PKG);
+			mInPageRefreshCallback = null;
+		}
+		mInPageRefreshEnabled = enabled;
+	}
+
+	/**
+	 * Refreshes the page, either by reloading it, or by calling the page's
+	 * refresh hook if in-page refreshes are enabled. This is what is called by
+	 * the default OnRefreshListener.
+	 */
+	public void refreshPage() {
+		if (mInPageRefreshEnabled) {
+			mRefreshableView.loadUrl(DEF_JS_IN_PAGE_REFRESH_CALL);
+		} else {
+			mRefreshableView.reload();
+		}
+	}
+
 	@Override
 	protected WebView createRefreshableView(Context context, AttributeSet attrs) {
 		WebView webView;
 		if (VERSION.SDK_INT >= VERSION_CODES.GINGERBREAD) {
 			webView = new InternalWebViewSDK9(context, attrs);
 		} else {
-			webView = new WebView(context, attrs);
+			webView = new InternalWebView(context, attrs);
 		}
 
 		webView.setId(R.id.webview);
@@ -112,8 +207,38 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 
 	@Override
 	protected boolean isReadyForPullEnd() {
-		float exactContentHeight = FloatMath.floor(mRefreshableView.getContentHeight() * mRefreshableView.getScale());
-		return mRefreshableView.getScrollY() >= (exactContentHeight - mRefreshableView.getHeight());
+		return mRefreshableView.getScrollY() >= (mContentExtent - mRefreshableView.getHeight());
+	}
+
+	/**
+	 * @return The last calculated height of the WebView's content, scaled by
+	 *         the zoom level, in pixels.
+	 */
+	protected final int getContentExtent() {
+		return mContentExtent;
+	}
+
+	/**
+	 * Recalculates the scaled height of the WebView's content. This is done
+	 * automatically when the WebView's size changes, as pages load, when the
+	 * zoom level changes and at the start of each touch gesture.
+	 * <p/>
+	 * If you set your own WebViewClient, call this from its
+	 * <code>onScaleChanged()</code>.
+	 */
+	@SuppressWarnings("deprecation")
+	public final void updateContentExtent() {
+		mContentExtent = (int) FloatMath.floor(mRefreshableView.getContentHeight() * mRefreshableView.getScale());
+	}
+
+	/**
+	 * Called by the default WebChromeClient as the page loads. This will not
+	 * be called if you set your own WebChromeClient on the WebView.
+	 * 
+	 * @param newProgress - Current page loading progress, from 0 to 100
+	 */
+	protected void onPageLoadProgressChanged(int newProgress) {
+		updateContentExtent();
 	}
 
 	@Override
@@ -128,8 +253,60 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 		mRefreshableView.saveState(saveState);
 	}
 
+	/**
+	 * Javascript interface used by in-page refreshes. These are called on a
+	 * background thread, so post to the UI thread.
+	 */
+	final class InPageRefreshCallback {
+
+		@JavascriptInterface
+		public void onRefreshComplete() {
+			post(new Runnable() {
+				@Override
+				public void run() {
+					if (mInPageRefreshEnabled) {
+						PullToRefreshWebView.this.onRefreshComplete();
+					}
+				}
+			});
+		}
+
+		@JavascriptInterface
+		public void reloadPage() {
+			post(new Runnable() {
+				@Override
+				public void run() {
+					if (mInPageRefreshEnabled) {
+						mRefreshableView.reload();
+					}
+				}
+			});
+		}
+	}
+
+	@TargetApi(11)
+	static class SDK11 {
+
+		static void removeJavascriptInterface(WebView webView, String name) {
+			webView.removeJavascriptInterface(name);
+		}
+	}
+
+	class InternalWebView extends WebView {
+
+		public InternalWebView(Context context, AttributeSet attrs) {
+			super(context, attrs);
+		}
+
+		@Override
+		protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+			super.onSizeChanged(w, h, oldw, oldh);
+			updateContentExtent();
+		}
+	}
+
 	@TargetApi(9)
-	final class InternalWebViewSDK9 extends WebView {
+	final class InternalWebViewSDK9 extends InternalWebView {
 
 		// WebView doesn't always scroll back to it's edge so we add some
 		// fuzziness
@@ -158,8 +335,7 @@ public class PullToRefreshWebView extends PullToRefreshBase<WebView> {
 		}
 
 		private int getScrollRange() {
-			return (int) Math.max(0, FloatMath.floor(mRefreshableView.getContentHeight() * mRefreshableView.getScale())
-					- (getHeight() - getPaddingBottom() - getPaddingTop()));
+			return Math.max(0, mContentExtent - (getHeight() - getPaddingBottom() - getPaddingTop()));
 		}
 	}
 }
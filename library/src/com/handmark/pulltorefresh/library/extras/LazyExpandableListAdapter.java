@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library.extras;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseExpandableListAdapter;
+
+import com.handmark.pulltorefresh.library.PullToRefreshExpandableListView;
+import com.handmark.pulltorefresh.library.R;
+
+/**
+ * An ExpandableListAdapter for {@link PullToRefreshExpandableListView} which
+ * only needs the groups up front. The children of a group are loaded the first
+ * time that it is expanded, via {@link #loadChildren(Object)} on an
+ * {@link Executor}. While they load, the group shows a compact loading row.
+ * If they fail to load, it shows an error row instead. Call
+ * {@link #retryGroup(int)} when it is clicked (see
+ * {@link #isGroupLoadFailed(int)}) to try again.
+ * <p/>
+ * Loaded children are cached until {@link #setGroups(List)} is called, which
+ * would usually be from your refresh listener once the new groups have been
+ * fetched. Any loads which are still running at that point are ignored when
+ * they complete.
+ *
+ * @param <G> - Type of the groups
+ * @param <C> - Type of the children
+ */
+public abstract class LazyExpandableListAdapter<G, C> extends BaseExpandableListAdapter {
+
+	static final String LOG_TAG = "PullToRefresh-LazyAdapter";
+
+	static final int DEFAULT_KEEP_ALIVE_SECONDS = 1;
+
+	private static Executor sDefaultExecutor;
+
+	/**
+	 * On Honeycomb and above we share AsyncTask's pool. Before that it isn't
+	 * public, so we use a small pool of our own, whose thread exits when idle.
+	 */
+	private static Executor getDefaultExecutor() {
+		if (null == sDefaultExecutor) {
+			if (VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB) {
+				sDefaultExecutor = SDK11.getThreadPoolExecutor();
+			} else {
+				sDefaultExecutor = new ThreadPoolExecutor(0, 1, DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>());
+			}
+		}
+		return sDefaultExecutor;
+	}
+
+	private final Context mContext;
+	private final Executor mExecutor;
+	private final Handler mHandler;
+
+	private final ArrayList<G> mGroups;
+	private final SparseArray<List<C>> mChildren;
+	private final SparseBooleanArray mLoading;
+	private final SparseBooleanArray mLoadFailed;
+
+	/**
+	 * Incremented whenever the groups are replaced, so that results from older
+	 * loads can be dropped.
+	 */
+	private int mGeneration;
+
+	/**
+	 * Constructor which loads children on a shared thread pool (AsyncTask's on
+	 * Honeycomb and above).
+	 */
+	public LazyExpandableListAdapter(Context context) {
+		this(context, getDefaultExecutor());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param context - Context
+	 * @param executor - Executor which {@link #loadChildren(Object)} is called
+	 *            on.
+	 */
+	public LazyExpandableListAdapter(Context context, Executor executor) {
+		mContext = context;
+		mExecutor = executor;
+		mHandler = new Handler(Looper.getMainLooper());
+		mGroups = new ArrayList<G>();
+		mChildren = new SparseArray<List<C>>();
+		mLoading = new SparseBooleanArray();
+		mLoadFailed = new SparseBooleanArray();
+	}
+
+	/**
+	 * Replaces the groups, and drops all of the cached children. Should be
+	 * called from the main thread.
+	 *
+	 * @param groups - New groups, may be null
+	 */
+	public void setGroups(List<G> groups) {
+		mGroups.clear();
+		if (null != groups) {
+			mGroups.addAll(groups);
+		}
+		clearChildren();
+	}
+
+	/**
+	 * Drops all of the cached children, so that they're loaded again when each
+	 * group is next expanded.
+	 */
+	public void clearChildren() {
+		mGeneration++;
+		mChildren.clear();
+		mLoading.clear();
+		mLoadFailed.clear();
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * @return true if the children of the group have been loaded.
+	 */
+	public boolean isGroupLoaded(int groupPosition) {
+		return null != mChildren.get(groupPosition);
+	}
+
+	/**
+	 * @return true if the children of the group are currently being loaded.
+	 */
+	public boolean isGroupLoading(int groupPosition) {
+		return mLoading.get(groupPosition);
+	}
+
+	/**
+	 * @return true if the last load of the group's children failed, in which
+	 *         case the group is showing an error row.
+	 */
+	public boolean isGroupLoadFailed(int groupPosition) {
+		return mLoadFailed.get(groupPosition);
+	}
+
+	/**
+	 * Loads the children of a group whose last load failed, replacing its
+	 * error row with the loading row. This would usually be called from an
+	 * OnChildClickListener, when the error row is clicked.
+	 */
+	public void retryGroup(int groupPosition) {
+		if (isGroupLoadFailed(groupPosition)) {
+			loadGroup(groupPosition);
+			notifyDataSetChanged();
+		}
+	}
+
+	/**
+	 * Loads the children of the group if they haven't been already. This is
+	 * called automatically when a group is expanded, but can be called
+	 * directly to prefetch a group.
+	 */
+	public void loadGroup(final int groupPosition) {
+		if (isGroupLoaded(groupPosition) || isGroupLoading(groupPosition) || groupPosition >= mGroups.size()) {
+			return;
+		}
+
+		mLoading.put(groupPosition, true);
+		mLoadFailed.delete(groupPosition);
+
+		final G group = mGroups.get(groupPosition);
+		final int generation = mGeneration;
+
+		mExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				List<C> children = null;
+				Exception error = null;
+				try {
+					children = loadChildren(group);
+				} catch (Exception e) {
+					error = e;
+				}
+
+				final List<C> result = children;
+				final Exception loadError = error;
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						onGroupLoadFinished(generation, groupPosition, group, result, loadError);
+					}
+				});
+			}
+		});
+	}
+
+	@Override
+	public void onGroupExpanded(int groupPosition) {
+		super.onGroupExpanded(groupPosition);
+		loadGroup(groupPosition);
+	}
+
+	@Override
+	public final int getGroupCount() {
+		return mGroups.size();
+	}
+
+	@Override
+	public final G getGroup(int groupPosition) {
+		return mGroups.get(groupPosition);
+	}
+
+	@Override
+	public long getGroupId(int groupPosition) {
+		return groupPosition;
+	}
+
+	@Override
+	public final int getChildrenCount(int groupPosition) {
+		final List<C> children = mChildren.get(groupPosition);
+		// If the children haven't been loaded, we show the loading/error row
+		return null != children ? children.size() : 1;
+	}
+
+	@Override
+	public final C getChild(int groupPosition, int childPosition) {
+		final List<C> children = mChildren.get(groupPosition);
+		return null != children ? children.get(childPosition) : null;
+	}
+
+	@Override
+	public long getChildId(int groupPosition, int childPosition) {
+		return childPosition;
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return false;
+	}
+
+	@Override
+	public final int getChildTypeCount() {
+		// Plus the loading and error rows
+		return getLoadedChildTypeCount() + 2;
+	}
+
+	@Override
+	public final int getChildType(int groupPosition, int childPosition) {
+		final List<C> children = mChildren.get(groupPosition);
+		if (null == children) {
+			return getLoadedChildTypeCount() + (isGroupLoadFailed(groupPosition) ? 1 : 0);
+		}
+		return getLoadedChildType(children.get(childPosition));
+	}
+
+	@Override
+	public final View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView,
+			ViewGroup parent) {
+		final List<C> children = mChildren.get(groupPosition);
+		if (null == children) {
+			if (isGroupLoadFailed(groupPosition)) {
+				return getLoadFailedView(convertView, parent);
+			}
+			return getLoadingView(convertView, parent);
+		}
+		return getChildView(children.get(childPosition), isLastChild, convertView, parent);
+	}
+
+	@Override
+	public boolean isChildSelectable(int groupPosition, int childPosition) {
+		// The error row is clickable, to retry
+		return isGroupLoaded(groupPosition) || isGroupLoadFailed(groupPosition);
+	}
+
+	/**
+	 * @return The Context this adapter was created with.
+	 */
+	protected final Context getContext() {
+		return mContext;
+	}
+
+	/**
+	 * Returns the number of types of loaded child views. Override this
+	 * instead of {@link #getChildTypeCount()}.
+	 */
+	protected int getLoadedChildTypeCount() {
+		return 1;
+	}
+
+	/**
+	 * Returns the type of the view for a loaded child. Override this instead
+	 * of {@link #getChildType(int, int)}.
+	 */
+	protected int getLoadedChildType(C child) {
+		return 0;
+	}
+
+	/**
+	 * Returns the row shown while the children of a group are loading.
+	 * Override this to provide your own loading row.
+	 */
+	protected View getLoadingView(View convertView, ViewGroup parent) {
+		if (null != convertView) {
+			return convertView;
+		}
+		return LayoutInflater.from(mContext).inflate(R.layout.pull_to_refresh_loading_row, parent, false);
+	}
+
+	/**
+	 * Returns the row shown when the children of a group failed to load.
+	 * Override this to provide your own error row.
+	 */
+	protected View getLoadFailedView(View convertView, ViewGroup parent) {
+		if (null != convertView) {
+			return convertView;
+		}
+		return LayoutInflater.from(mContext).inflate(R.layout.pull_to_refresh_error_row, parent, false);
+	}
+
+	/**
+	 * Called when loading the children of a group threw an exception. The
+	 * group's loading row is replaced by the error row, and the load is
+	 * retried by {@link #retryGroup(int)}, or the next time the group is
+	 * expanded. The default implementation just logs the error.
+	 *
+	 * @param group - Group which failed to load
+	 * @param e - Exception thrown by {@link #loadChildren(Object)}
+	 */
+	protected void onChildrenLoadFailed(G group, Exception e) {
+		Log.w(LOG_TAG, "Unable to load children", e);
+	}
+
+	/**
+	 * Returns the View for a loaded child.
+	 */
+	protected abstract View getChildView(C child, boolean isLastChild, View convertView, ViewGroup parent);
+
+	/**
+	 * Loads the children of <var>group</var>. This is called on the adapter's
+	 * Executor, so it can block.
+	 *
+	 * @param group - Group to load the children for
+	 * @return The children of the group
+	 * @throws Exception - If the children could not be loaded
+	 */
+	protected abstract List<C> loadChildren(G group) throws Exception;
+
+	private void onGroupLoadFinished(int generation, int groupPosition, G group, List<C> children, Exception error) {
+		// If the groups have been replaced since, just drop the result
+		if (generation != mGeneration) {
+			return;
+		}
+
+		mLoading.delete(groupPosition);
+
+		if (null != error) {
+			mLoadFailed.put(groupPosition, true);
+			onChildrenLoadFailed(group, error);
+			notifyDataSetChanged();
+			return;
+		}
+
+		if (null == children) {
+			children = Collections.emptyList();
+		}
+		mChildren.put(groupPosition, children);
+		notifyDataSetChanged();
+	}
+
+	@TargetApi(11)
+	static class SDK11 {
+
+		static Executor getThreadPoolExecutor() {
+			return AsyncTask.THREAD_POOL_EXECUTOR;
+		}
+	}
+
+}
@@ -17,11 +17,18 @@ package com.handmark.pulltorefresh.library.extras;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.webkit.JavascriptInterface;
+import android.webkit.ValueCallback;
 import android.webkit.WebView;
 
 import com.handmark.pulltorefresh.library.PullToRefreshWebView;
+import com.handmark.pulltorefresh.library.internal.ViewCompat;
 
 /**
  * An advanced version of {@link PullToRefreshWebView} which delegates the
@@ -57,6 +64,24 @@ import com.handmark.pulltorefresh.library.PullToRefreshWebView;
  * }
  * </pre>
  * 
+ * By default these are called on every touch event of the gesture, and as the
+ * response is asynchronous, the gesture reads the result of the previous call.
+ * The first request is made when the finger goes down, so the response has
+ * usually arrived by the time the gesture has moved past the touch slop. If it
+ * hasn't, the pull starts one touch event late.
+ * You can instead call {@link #setEdgeStatePushEnabled(boolean)}, which
+ * injects a small script into each page once it has loaded. The script calls
+ * the same methods whenever the page (or any element in it) scrolls, at most
+ * once every {@value #JS_PUSH_THROTTLE_MS}ms, so the touch events just read
+ * the last reported state.
+ * <p/>
+ * On KitKat and above, the requests are made through
+ * <code>WebView.evaluateJavascript()</code> rather than <code>javascript:</code>
+ * URLs. Both edges are requested in a single call, at most once per frame. The
+ * methods can then also simply <code>return</code> the result, rather than
+ * using the callback. Any truthy or falsy value can be returned, while
+ * <code>undefined</code> or <code>null</code> means the callback will be used.
+ * 
  * @author Chris Banes
  */
 public class PullToRefreshWebView2 extends PullToRefreshWebView {
@@ -65,6 +90,49 @@ public class PullToRefreshWebView2 extends PullToRefreshWebView {
 	static final String DEF_JS_READY_PULL_DOWN_CALL = "javascript:isReadyForPullDown();";
 	static final String DEF_JS_READY_PULL_UP_CALL = "javascript:isReadyForPullUp();";
 
+	/**
+	 * Calls the given method if it exists, converting the result to a boolean.
+	 * A method which uses the callback, and so returns undefined, gives null.
+	 */
+	static final String JS_CALL_AS_BOOLEAN_FN = "(function(f) {"
+			+ " if (typeof f != 'function') return null;"
+			+ " var r = f(); return r == null ? null : !!r; })";
+
+	/**
+	 * Expressions used with evaluateJavascript(). Each evaluates to an array of
+	 * [down, up], where each entry is true, false or null.
+	 */
+	static final String DEF_JS_READY_PULL_DOWN_EXPR = "[" + JS_CALL_AS_BOOLEAN_FN
+			+ "(window.isReadyForPullDown), null]";
+	static final String DEF_JS_READY_PULL_UP_EXPR = "[null, " + JS_CALL_AS_BOOLEAN_FN + "(window.isReadyForPullUp)]";
+	static final String DEF_JS_READY_PULL_BOTH_EXPR = "[" + JS_CALL_AS_BOOLEAN_FN + "(window.isReadyForPullDown), "
+			+ JS_CALL_AS_BOOLEAN_FN + "(window.isReadyForPullUp)]";
+
+	static final int JS_PUSH_THROTTLE_MS = 100;
+
+	/**
+	 * Script which reports the edge state whenever anything in the page
+	 * scrolls (scroll events don't bubble, so we listen in the capture phase),
+	 * or the page is resized. Guarded so that it's only installed once per
+	 * page.
+	 */
+	static final String DEF_JS_PUSH_EDGE_STATE_SCRIPT = "javascript:(function() {"
+			+ "if (window.__ptrPushInstalled) return;"
+			+ "window.__ptrPushInstalled = true;"
+			+ "var pending = false;"
+			+ "function report() {"
+			+ "  pending = false;"
+			+ "  if (typeof isReadyForPullDown == 'function') isReadyForPullDown();"
+			+ "  if (typeof isReadyForPullUp == 'function') isReadyForPullUp();"
+			+ "}"
+			+ "function onChange() {"
+			+ "  if (!pending) { pending = true; setTimeout(report, " + JS_PUSH_THROTTLE_MS + "); }"
+			+ "}"
+			+ "document.addEventListener('scroll', onChange, true);"
+			+ "window.addEventListener('resize', onChange, false);"
+			+ "report();"
+			+ "})();";
+
 	public PullToRefreshWebView2(Context context) {
 		super(context);
 	}
@@ -81,6 +149,46 @@ public class PullToRefreshWebView2 extends PullToRefreshWebView {
 	private final AtomicBoolean mIsReadyForPullDown = new AtomicBoolean(false);
 	private final AtomicBoolean mIsReadyForPullUp = new AtomicBoolean(false);
 
+	private boolean mEdgeStatePushEnabled = false;
+	private boolean mEdgeStateScriptInjected = false;
+
+	private EdgeStateValueCallback mEdgeStateValueCallback;
+	private boolean mEdgeStateQueryPending = false;
+
+	/**
+	 * Evaluates the edge state query once per frame, however many times it
+	 * has been requested during the frame.
+	 */
+	private final Runnable mEdgeStateQueryRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mEdgeStateQueryPending = false;
+			evaluateEdgeStateQuery();
+		}
+	};
+
+	/**
+	 * @return true if the page pushes its edge state, rather than it being
+	 *         requested on each touch event.
+	 */
+	public final boolean isEdgeStatePushEnabled() {
+		return mEdgeStatePushEnabled;
+	}
+
+	/**
+	 * Sets whether the page should push its edge state whenever it scrolls,
+	 * rather than it being requested on each touch event. Takes effect from
+	 * the next page load. Requires the default WebChromeClient.
+	 * 
+	 * @param enabled - true to enable pushing of the edge state
+	 */
+	public final void setEdgeStatePushEnabled(boolean enabled) {
+		mEdgeStatePushEnabled = enabled;
+		if (!enabled) {
+			mEdgeStateScriptInjected = false;
+		}
+	}
+
 	@Override
 	protected WebView createRefreshableView(Context context, AttributeSet attrs) {
 		WebView webView = super.createRefreshableView(context, attrs);
@@ -92,10 +200,47 @@ public class PullToRefreshWebView2 extends PullToRefreshWebView {
 		return webView;
 	}
 
+	@Override
+	public boolean dispatchTouchEvent(MotionEvent event) {
+		if (event.getAction() == MotionEvent.ACTION_DOWN && !mEdgeStateScriptInjected && isPullToRefreshEnabled()) {
+			// Request the edge state now, so that it's ready by the time the
+			// gesture passes the touch slop
+			prefetchEdgeState();
+		}
+		return super.dispatchTouchEvent(event);
+	}
+
+	@Override
+	protected void onPageLoadProgressChanged(int newProgress) {
+		super.onPageLoadProgressChanged(newProgress);
+
+		if (!mEdgeStatePushEnabled) {
+			return;
+		}
+
+		if (newProgress == 100) {
+			// The page has loaded, so install the script which pushes state
+			getRefreshableView().loadUrl(DEF_JS_PUSH_EDGE_STATE_SCRIPT);
+			mEdgeStateScriptInjected = true;
+		} else {
+			// A new page is loading, so fall back to requesting the state
+			mEdgeStateScriptInjected = false;
+		}
+	}
+
 	@Override
 	protected boolean isReadyForPullStart() {
+		// If the page is pushing state, just read it
+		if (mEdgeStateScriptInjected) {
+			return mIsReadyForPullDown.get();
+		}
+
 		// Call Javascript...
-		getRefreshableView().loadUrl(DEF_JS_READY_PULL_DOWN_CALL);
+		if (canEvaluateJavascript()) {
+			requestEdgeStateQuery();
+		} else {
+			getRefreshableView().loadUrl(DEF_JS_READY_PULL_DOWN_CALL);
+		}
 
 		// Response will be given to JsValueCallback, which will update
 		// mIsReadyForPullDown
@@ -105,8 +250,17 @@ public class PullToRefreshWebView2 extends PullToRefreshWebView {
 
 	@Override
 	protected boolean isReadyForPullEnd() {
+		// If the page is pushing state, just read it
+		if (mEdgeStateScriptInjected) {
+			return mIsReadyForPullUp.get();
+		}
+
 		// Call Javascript...
-		getRefreshableView().loadUrl(DEF_JS_READY_PULL_UP_CALL);
+		if (canEvaluateJavascript()) {
+			requestEdgeStateQuery();
+		} else {
+			getRefreshableView().loadUrl(DEF_JS_READY_PULL_UP_CALL);
+		}
 
 		// Response will be given to JsValueCallback, which will update
 		// mIsReadyForPullUp
@@ -114,6 +268,83 @@ public class PullToRefreshWebView2 extends PullToRefreshWebView {
 		return mIsReadyForPullUp.get();
 	}
 
+	private void prefetchEdgeState() {
+		if (canEvaluateJavascript()) {
+			if (mEdgeStateQueryPending) {
+				removeCallbacks(mEdgeStateQueryRunnable);
+				mEdgeStateQueryPending = false;
+			}
+			evaluateEdgeStateQuery();
+		} else {
+			final Mode mode = getMode();
+			if (mode.showHeaderLoadingLayout()) {
+				getRefreshableView().loadUrl(DEF_JS_READY_PULL_DOWN_CALL);
+			}
+			if (mode.showFooterLoadingLayout()) {
+				getRefreshableView().loadUrl(DEF_JS_READY_PULL_UP_CALL);
+			}
+		}
+	}
+
+	private void requestEdgeStateQuery() {
+		if (!mEdgeStateQueryPending) {
+			mEdgeStateQueryPending = true;
+			ViewCompat.postOnAnimation(getRefreshableView(), mEdgeStateQueryRunnable);
+		}
+	}
+
+	private void evaluateEdgeStateQuery() {
+		// Only query the edges which the current Mode can use
+		final Mode mode = getMode();
+		final String expression;
+		if (mode.showHeaderLoadingLayout() && mode.showFooterLoadingLayout()) {
+			expression = DEF_JS_READY_PULL_BOTH_EXPR;
+		} else if (mode.showFooterLoadingLayout()) {
+			expression = DEF_JS_READY_PULL_UP_EXPR;
+		} else {
+			expression = DEF_JS_READY_PULL_DOWN_EXPR;
+		}
+
+		if (null == mEdgeStateValueCallback) {
+			mEdgeStateValueCallback = new EdgeStateValueCallback();
+		}
+
+		SDK19.evaluateJavascript(getRefreshableView(), expression, mEdgeStateValueCallback);
+	}
+
+	private static boolean canEvaluateJavascript() {
+		return VERSION.SDK_INT >= VERSION_CODES.KITKAT;
+	}
+
+	/**
+	 * Parses a JSON result such as <code>[true,null]</code>. Null entries are
+	 * ignored, as the page will have responded via {@link JsValueCallback}.
+	 * The expressions convert the results to booleans, but any other JSON
+	 * value is treated by its Javascript truthiness.
+	 */
+	final class EdgeStateValueCallback implements ValueCallback<String> {
+
+		@Override
+		public void onReceiveValue(String value) {
+			if (null == value || value.length() < 2 || value.charAt(0) != '[') {
+				return;
+			}
+
+			final String[] values = value.substring(1, value.length() - 1).split(",");
+			if (values.length == 2) {
+				setFromJson(mIsReadyForPullDown, values[0].trim());
+				setFromJson(mIsReadyForPullUp, values[1].trim());
+			}
+		}
+
+		private void setFromJson(AtomicBoolean target, String value) {
+			if (value.length() == 0 || "null".equals(value)) {
+				return;
+			}
+			target.set(!"false".equals(value) && !"0".equals(value) && !"\"\"".equals(value));
+		}
+	}
+
 	/**
 	 * Used for response from Javascript
 	 * 
@@ -121,12 +352,22 @@ public class PullToRefreshWebView2 extends PullToRefreshWebView {
 	 */
 	final class JsValueCallback {
 
+		@JavascriptInterface
 		public void isReadyForPullUpResponse(boolean response) {
 			mIsReadyForPullUp.set(response);
 		}
 
+		@JavascriptInterface
 		public void isReadyForPullDownResponse(boolean response) {
 			mIsReadyForPullDown.set(response);
 		}
 	}
+
+	@TargetApi(19)
+	static class SDK19 {
+
+		static void evaluateJavascript(WebView webView, String script, ValueCallback<String> callback) {
+			webView.evaluateJavascript(script, callback);
+		}
+	}
 }
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library.extras;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.util.Log;
+import android.view.View;
+
+import com.handmark.pulltorefresh.library.PullToRefreshBase;
+
+/**
+ * Stores the result of the last successful refresh on disk, so that it can be
+ * shown straight away the next time the process starts, rather than showing an
+ * empty {@link PullToRefreshBase} until the first refresh returns.
+ * <p/>
+ * The snapshot is written in a compact binary format (see {@link Codec}), and
+ * is read back through a memory-mapped file. A typical usage is:
+ * <p/>
+ *
+ * <pre>
+ * // After a successful refresh
+ * store.write(items);
+ * refreshView.onRefreshComplete();
+ *
+ * // On a cold start
+ * store.restore(refreshView, new OnSnapshotRestoredListener&lt;Item&gt;() {
+ *   public void onSnapshotRestored(List&lt;Item&gt; items, long timestamp) {
+ *     adapter.addAll(items);
+ *   }
+ * });
+ * </pre>
+ *
+ * When a snapshot is restored, a revalidation is started by calling
+ * {@link PullToRefreshBase#setRefreshing(boolean) setRefreshing(false)}, which
+ * puts the View into the {@link PullToRefreshBase.State#MANUAL_REFRESHING
+ * MANUAL_REFRESHING} state and calls your refresh listener as normal.
+ *
+ * @param <T> - Type of item stored in the snapshot
+ */
+public class RefreshSnapshotStore<T> {
+
+	static final String LOG_TAG = "PullToRefresh-SnapshotStore";
+
+	// 'PTRS'
+	static final int MAGIC = 0x50545253;
+	static final int VERSION = 1;
+
+	// Magic + Version + Timestamp + Item Count
+	static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+	static final String TEMP_SUFFIX = ".tmp";
+
+	private final File mFile;
+	private final Codec<T> mCodec;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file - File which the snapshot is saved to. Usually somewhere in
+	 *            {@link android.content.Context#getCacheDir()
+	 *            Context.getCacheDir()}.
+	 * @param codec - Codec used to write and read each item.
+	 */
+	public RefreshSnapshotStore(File file, Codec<T> codec) {
+		if (null == file || null == codec) {
+			throw new IllegalArgumentException("File and Codec must not be null");
+		}
+		mFile = file;
+		mCodec = codec;
+	}
+
+	/**
+	 * Deletes any saved snapshot.
+	 */
+	public void clear() {
+		mFile.delete();
+	}
+
+	/**
+	 * @return The File that the snapshot is stored in.
+	 */
+	public File getFile() {
+		return mFile;
+	}
+
+	/**
+	 * @return true if there is currently a snapshot saved.
+	 */
+	public boolean hasSnapshot() {
+		return mFile.length() >= HEADER_SIZE;
+	}
+
+	/**
+	 * Reads the saved snapshot via a memory-mapped file.
+	 *
+	 * @return Snapshot which has been read, or null if there is no snapshot, or
+	 *         it is corrupt or from a different version.
+	 */
+	public Snapshot<T> read() {
+		if (!hasSnapshot()) {
+			return null;
+		}
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(mFile, "r");
+			final FileChannel channel = raf.getChannel();
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				Log.w(LOG_TAG, "Ignoring snapshot with unknown format: " + mFile);
+				return null;
+			}
+
+			final long timestamp = buffer.getLong();
+			final int count = buffer.getInt();
+
+			// Each item is at least one byte, so anything else is corrupt
+			if (count < 0 || count > buffer.remaining()) {
+				Log.w(LOG_TAG, "Ignoring corrupt snapshot: " + mFile);
+				return null;
+			}
+
+			final ArrayList<T> items = new ArrayList<T>(count);
+			for (int i = 0; i < count; i++) {
+				items.add(mCodec.read(buffer));
+			}
+			return new Snapshot<T>(items, timestamp);
+
+		} catch (BufferUnderflowException e) {
+			Log.w(LOG_TAG, "Ignoring truncated or corrupt snapshot: " + mFile);
+		} catch (IOException e) {
+			Log.w(LOG_TAG, "Unable to read snapshot: " + mFile, e);
+		} finally {
+			closeQuietly(raf);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reads the saved snapshot and, if there is one, passes it to
+	 * <var>listener</var> so that it can be displayed. Once the listener has
+	 * returned, a revalidation is started by calling
+	 * {@link PullToRefreshBase#setRefreshing(boolean) setRefreshing(false)} on
+	 * <var>refreshView</var>.
+	 *
+	 * @param refreshView - View to start the revalidation on
+	 * @param listener - Listener which is given the restored items
+	 * @return true if a snapshot was restored
+	 */
+	public boolean restore(PullToRefreshBase<? extends View> refreshView, OnSnapshotRestoredListener<T> listener) {
+		final Snapshot<T> snapshot = read();
+		if (null == snapshot) {
+			return false;
+		}
+
+		listener.onSnapshotRestored(snapshot.getItems(), snapshot.getTimestamp());
+
+		// Now revalidate the content, without scrolling to show the header
+		refreshView.setRefreshing(false);
+		return true;
+	}
+
+	/**
+	 * Writes <var>items</var> as the new snapshot. The data is first written to
+	 * a temporary file, which then replaces the existing snapshot, so a failed
+	 * write never leaves a partial snapshot behind.
+	 *
+	 * @param items - Items to save
+	 * @return true if the snapshot was written successfully
+	 */
+	public boolean write(List<T> items) {
+		final File tempFile = new File(mFile.getPath() + TEMP_SUFFIX);
+		final File parent = mFile.getParentFile();
+		if (null != parent && !parent.exists()) {
+			parent.mkdirs();
+		}
+
+		DataOutputStream out = null;
+		try {
+			final FileOutputStream fileOut = new FileOutputStream(tempFile);
+			out = new DataOutputStream(new BufferedOutputStream(fileOut));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(System.currentTimeMillis());
+
+			final int count = items.size();
+			out.writeInt(count);
+			for (int i = 0; i < count; i++) {
+				mCodec.write(items.get(i), out);
+			}
+
+			// Make sure the data is on disk before it replaces the snapshot
+			out.flush();
+			fileOut.getFD().sync();
+			out.close();
+			out = null;
+
+			if (tempFile.renameTo(mFile)) {
+				return true;
+			}
+			Log.w(LOG_TAG, "Unable to replace snapshot: " + mFile);
+
+		} catch (IOException e) {
+			Log.w(LOG_TAG, "Unable to write snapshot: " + mFile, e);
+		} finally {
+			closeQuietly(out);
+		}
+
+		tempFile.delete();
+		return false;
+	}
+
+	/**
+	 * Helper for {@link Codec} implementations to write a String in a form
+	 * that can be read back by {@link #readString(ByteBuffer)}.
+	 */
+	public static void writeString(DataOutputStream out, String value) throws IOException {
+		if (null == value) {
+			out.writeInt(-1);
+		} else {
+			final byte[] bytes = value.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Helper for {@link Codec} implementations to read a String written by
+	 * {@link #writeString(DataOutputStream, String)}.
+	 * 
+	 * @throws BufferUnderflowException if the length read is invalid, which
+	 *             {@link #read()} treats as a corrupt snapshot
+	 */
+	public static String readString(ByteBuffer in) {
+		final int length = in.getInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > in.remaining()) {
+			throw new BufferUnderflowException();
+		}
+
+		final byte[] bytes = new byte[length];
+		in.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (null != closeable) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// NO-OP
+			}
+		}
+	}
+
+	/**
+	 * Writes and reads a single item of a snapshot. Values written with
+	 * {@link java.io.DataOutput DataOutput} can be read back with the
+	 * equivalent {@link ByteBuffer} getters, except for
+	 * {@link java.io.DataOutput#writeUTF(String) writeUTF()}. Use
+	 * {@link RefreshSnapshotStore#writeString(DataOutputStream, String)
+	 * writeString()} and {@link RefreshSnapshotStore#readString(ByteBuffer)
+	 * readString()} for Strings.
+	 * <p/>
+	 * Each item must write at least one byte.
+	 */
+	public static interface Codec<T> {
+
+		/**
+		 * Write <var>item</var> to <var>out</var>.
+		 */
+		public void write(T item, DataOutputStream out) throws IOException;
+
+		/**
+		 * Read an item from <var>in</var>, which is positioned at the start
+		 * of the item. Throw {@link BufferUnderflowException} if the data is
+		 * invalid.
+		 */
+		public T read(ByteBuffer in);
+
+	}
+
+	/**
+	 * Listener which is given the items of a restored snapshot.
+	 */
+	public static interface OnSnapshotRestoredListener<T> {
+
+		/**
+		 * Called with the contents of the snapshot, before the revalidation
+		 * is started.
+		 *
+		 * @param items - Items which were saved
+		 * @param timestamp - Time (in ms) at which the snapshot was saved
+		 */
+		public void onSnapshotRestored(List<T> items, long timestamp);
+
+	}
+
+	/**
+	 * The contents of a snapshot which has been read.
+	 */
+	public static final class Snapshot<T> {
+		private final List<T> mItems;
+		private final long mTimestamp;
+
+		Snapshot(List<T> items, long timestamp) {
+			mItems = items;
+			mTimestamp = timestamp;
+		}
+
+		public List<T> getItems() {
+			return mItems;
+		}
+
+		/**
+		 * @return Time (in ms) at which the snapshot was saved
+		 */
+		public long getTimestamp() {
+			return mTimestamp;
+		}
+	}
+
+}
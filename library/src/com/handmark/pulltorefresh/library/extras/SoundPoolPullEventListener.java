@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library.extras;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Looper;
+import android.view.View;
+
+import com.handmark.pulltorefresh.library.PullToRefreshBase;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.Mode;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.State;
+
+/**
+ * A lower latency version of {@link SoundPullEventListener}. The sounds are
+ * preloaded into a {@link SoundPool} as soon as they're added (SoundPool
+ * decodes them off the main thread), so playing a sound during a Pull Event
+ * doesn't need to decode anything.
+ * <p/>
+ * Add it with {@link #attach(PullToRefreshBase)}, from the UI thread. On
+ * Honeycomb MR1 and above, the SoundPool is then released when the
+ * PullToRefresh View is detached from its window, and reloaded when it is
+ * attached again. On older platforms, or if you add it as a listener
+ * directly, you should call {@link #release()} yourself, e.g. from
+ * <code>onDestroy()</code>.
+ * <p/>
+ * SoundPool can only report when a sound has finished loading from Froyo
+ * (API 8). On older platforms a sound is treated as loaded as soon as it has
+ * been added, so the first play may be skipped while it is still decoding.
+ * <p/>
+ * This listener must be called on the UI thread, so it can't be used with
+ * {@link PullToRefreshBase.PullEventDispatchMode#BACKGROUND}.
+ */
+public class SoundPoolPullEventListener<V extends View> implements PullToRefreshBase.OnPullEventListener<V> {
+
+	static final int MAX_STREAMS = 1;
+
+	private final Context mContext;
+
+	/**
+	 * Both indexed by {@link State#ordinal()}. A value of 0 means that there
+	 * is no sound, or that it hasn't been loaded.
+	 */
+	private final int[] mSoundResIds;
+	private final int[] mSoundIds;
+	private final boolean[] mSoundsLoaded;
+
+	private SoundPool mSoundPool;
+
+	/**
+	 * The OnAttachStateChangeListener added to each attached View.
+	 */
+	private final Map<View, Object> mAttachStateListeners = new WeakHashMap<View, Object>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param context - Context
+	 */
+	public SoundPoolPullEventListener(Context context) {
+		mContext = context.getApplicationContext();
+
+		final int stateCount = State.values().length;
+		mSoundResIds = new int[stateCount];
+		mSoundIds = new int[stateCount];
+		mSoundsLoaded = new boolean[stateCount];
+	}
+
+	/**
+	 * Adds this as a pull event listener of the given View, and on Honeycomb
+	 * MR1 and above, releases the SoundPool whenever the View is detached from
+	 * its window. Must be called from the UI thread.
+	 * 
+	 * @param refreshView - View to play the sounds for
+	 */
+	public void attach(PullToRefreshBase<V> refreshView) {
+		assertUiThread();
+		refreshView.addOnPullEventListener(this);
+		if (VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB_MR1 && !mAttachStateListeners.containsKey(refreshView)) {
+			mAttachStateListeners.put(refreshView, SDK12.addReleaseOnDetachListener(refreshView, this));
+		}
+	}
+
+	/**
+	 * Removes this from the View's pull event listeners, and releases the
+	 * SoundPool. Must be called from the UI thread.
+	 * 
+	 * @param refreshView - View previously passed to
+	 *            {@link #attach(PullToRefreshBase)}
+	 */
+	public void detach(PullToRefreshBase<V> refreshView) {
+		assertUiThread();
+		refreshView.removeOnPullEventListener(this);
+		final Object attachListener = mAttachStateListeners.remove(refreshView);
+		if (null != attachListener) {
+			SDK12.removeReleaseOnDetachListener(refreshView, attachListener);
+		}
+		release();
+	}
+
+	@Override
+	public final void onPullEvent(PullToRefreshBase<V> refreshView, State event, Mode direction) {
+		assertUiThread();
+
+		final int index = event.ordinal();
+		if (mSoundsLoaded[index]) {
+			mSoundPool.play(mSoundIds[index], 1f, 1f, 0, 0, 1f);
+		} else if (mSoundResIds[index] != 0 && null == mSoundPool) {
+			// We've been released, so reload for next time
+			loadSounds();
+		}
+	}
+
+	void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+		if (soundPool != mSoundPool || status != 0) {
+			return;
+		}
+
+		for (int i = 0; i < mSoundIds.length; i++) {
+			if (mSoundIds[i] == sampleId) {
+				mSoundsLoaded[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Set the Sounds to be played when a Pull Event happens. The sound is
+	 * loaded straight away, so that it is ready to play.
+	 * <p/>
+	 * If you've already set a sound for a certain event, and add another sound
+	 * for that event, only the new sound will be played.
+	 *
+	 * @param event - The event for which the sound will be played.
+	 * @param resId - Resource Id of the sound file to be played (e.g.
+	 *            <var>R.raw.pull_sound</var>)
+	 */
+	public void addSoundEvent(State event, int resId) {
+		final int index = event.ordinal();
+		unloadSound(index);
+
+		mSoundResIds[index] = resId;
+		loadSound(index);
+	}
+
+	/**
+	 * Clears all of the previously set sounds and events.
+	 */
+	public void clearSounds() {
+		for (int i = 0; i < mSoundResIds.length; i++) {
+			unloadSound(i);
+			mSoundResIds[i] = 0;
+		}
+	}
+
+	/**
+	 * Releases the SoundPool. The sounds will be reloaded on the next Pull
+	 * Event, or when they're next added.
+	 */
+	public void release() {
+		if (null != mSoundPool) {
+			mSoundPool.release();
+			mSoundPool = null;
+		}
+
+		for (int i = 0; i < mSoundIds.length; i++) {
+			mSoundIds[i] = 0;
+			mSoundsLoaded[i] = false;
+		}
+	}
+
+	private static void assertUiThread() {
+		if (Looper.myLooper() != Looper.getMainLooper()) {
+			throw new IllegalStateException(
+					"SoundPoolPullEventListener must be used on the UI thread, so can't be used with PullEventDispatchMode.BACKGROUND");
+		}
+	}
+
+	void loadSounds() {
+		for (int i = 0; i < mSoundResIds.length; i++) {
+			loadSound(i);
+		}
+	}
+
+	private void loadSound(int index) {
+		if (mSoundResIds[index] == 0 || mSoundIds[index] != 0) {
+			return;
+		}
+
+		if (null == mSoundPool) {
+			mSoundPool = createSoundPool();
+		}
+		mSoundIds[index] = mSoundPool.load(mContext, mSoundResIds[index], 1);
+
+		// Without a load complete callback, assume it's ready to play
+		if (VERSION.SDK_INT < VERSION_CODES.FROYO) {
+			mSoundsLoaded[index] = mSoundIds[index] != 0;
+		}
+	}
+
+	private void unloadSound(int index) {
+		if (null != mSoundPool && mSoundIds[index] != 0) {
+			mSoundPool.unload(mSoundIds[index]);
+		}
+		mSoundIds[index] = 0;
+		mSoundsLoaded[index] = false;
+	}
+
+	@SuppressWarnings("deprecation")
+	private SoundPool createSoundPool() {
+		SoundPool soundPool = new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+		if (VERSION.SDK_INT >= VERSION_CODES.FROYO) {
+			SDK8.setOnLoadCompleteListener(soundPool, this);
+		}
+		return soundPool;
+	}
+
+	@TargetApi(8)
+	static class SDK8 {
+
+		static void setOnLoadCompleteListener(SoundPool soundPool, final SoundPoolPullEventListener<?> listener) {
+			soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+				@Override
+				public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+					listener.onLoadComplete(soundPool, sampleId, status);
+				}
+			});
+		}
+	}
+
+	@TargetApi(12)
+	static class SDK12 {
+
+		static Object addReleaseOnDetachListener(View view, final SoundPoolPullEventListener<?> listener) {
+			View.OnAttachStateChangeListener attachListener = new View.OnAttachStateChangeListener() {
+				@Override
+				public void onViewDetachedFromWindow(View v) {
+					listener.release();
+				}
+
+				@Override
+				public void onViewAttachedToWindow(View v) {
+					listener.loadSounds();
+				}
+			};
+			view.addOnAttachStateChangeListener(attachListener);
+			return attachListener;
+		}
+
+		static void removeReleaseOnDetachListener(View view, Object attachListener) {
+			view.removeOnAttachStateChangeListener((View.OnAttachStateChangeListener) attachListener);
+		}
+	}
+
+}
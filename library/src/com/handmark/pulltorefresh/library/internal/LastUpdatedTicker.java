@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library.internal;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.DateUtils;
+import android.util.SparseArray;
+
+/**
+ * A single, process-wide ticker which keeps the relative 'Last Updated' labels
+ * of {@link LoadingLayout}s up to date. Only layouts which are attached and
+ * visible are updated on each tick, and the formatted labels are cached so
+ * that they are not re-formatted for every layout. Should only be used from the
+ * main thread.
+ */
+public final class LastUpdatedTicker implements Runnable {
+
+	static final long TICK_INTERVAL_MS = DateUtils.MINUTE_IN_MILLIS;
+
+	/**
+	 * Below this age the relative label only depends on the elapsed time, so it
+	 * can be cached by the number of elapsed minutes.
+	 */
+	static final long MAX_CACHEABLE_AGE_MS = DateUtils.DAY_IN_MILLIS;
+
+	private static LastUpdatedTicker sInstance;
+
+	public static LastUpdatedTicker getInstance() {
+		if (null == sInstance) {
+			sInstance = new LastUpdatedTicker();
+		}
+		return sInstance;
+	}
+
+	private final Handler mHandler;
+	private final ArrayList<LoadingLayout> mLayouts;
+	private final SparseArray<CharSequence> mLabelCache;
+
+	private boolean mScheduled;
+
+	private LastUpdatedTicker() {
+		mHandler = new Handler(Looper.getMainLooper());
+		mLayouts = new ArrayList<LoadingLayout>();
+		mLabelCache = new SparseArray<CharSequence>();
+	}
+
+	/**
+	 * Returns the relative label for <var>time</var>, such as
+	 * "3 minutes ago".
+	 *
+	 * @param time - Time of the last update, in ms
+	 * @param now - Current time, in ms
+	 */
+	public CharSequence getLabel(long time, long now) {
+		final long age = Math.max(0, now - time);
+		if (age >= MAX_CACHEABLE_AGE_MS) {
+			return DateUtils.getRelativeTimeSpanString(time, now, DateUtils.MINUTE_IN_MILLIS);
+		}
+
+		final int elapsedMinutes = (int) (age / DateUtils.MINUTE_IN_MILLIS);
+		CharSequence label = mLabelCache.get(elapsedMinutes);
+		if (null == label) {
+			label = DateUtils.getRelativeTimeSpanString(now - elapsedMinutes * DateUtils.MINUTE_IN_MILLIS, now,
+					DateUtils.MINUTE_IN_MILLIS);
+			mLabelCache.put(elapsedMinutes, label);
+		}
+		return label;
+	}
+
+	public void register(LoadingLayout layout) {
+		if (!mLayouts.contains(layout)) {
+			mLayouts.add(layout);
+		}
+		schedule();
+	}
+
+	public void unregister(LoadingLayout layout) {
+		mLayouts.remove(layout);
+
+		if (mLayouts.isEmpty()) {
+			mHandler.removeCallbacks(this);
+			mScheduled = false;
+
+			// Drop the cache so that it doesn't outlive any locale changes
+			mLabelCache.clear();
+		}
+	}
+
+	@Override
+	public void run() {
+		mScheduled = false;
+
+		final long now = System.currentTimeMillis();
+		for (int i = 0, z = mLayouts.size(); i < z; i++) {
+			final LoadingLayout layout = mLayouts.get(i);
+			if (layout.isShown()) {
+				layout.updateLastUpdatedLabel(now);
+			}
+		}
+
+		schedule();
+	}
+
+	private void schedule() {
+		if (!mScheduled && !mLayouts.isEmpty()) {
+			mHandler.postDelayed(this, TICK_INTERVAL_MS);
+			mScheduled = true;
+		}
+	}
+
+}
@@ -23,6 +23,7 @@ import android.graphics.Typeface;
 import android.graphics.drawable.AnimationDrawable;
 import android.graphics.drawable.Drawable;
 import android.text.TextUtils;
+import android.text.format.DateUtils;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -64,6 +65,9 @@ public abstract class LoadingLayout extends FrameLayout implements ILoadingLayou
 	private CharSequence mRefreshingLabel;
 	private CharSequence mReleaseLabel;
 
+	private long mLastUpdatedTime;
+	private long mLastUpdatedMinutes = -1;
+
 	public LoadingLayout(Context context, final Mode mode, final Orientation scrollDirection, TypedArray attrs) {
 		super(context);
 		mMode = mode;
@@ -228,6 +232,9 @@ public abstract class LoadingLayout extends FrameLayout implements ILoadingLayou
 			mHeaderText.setText(mPullLabel);
 		}
 
+		// The ticker skips us while we're hidden, so make sure we're current
+		updateLastUpdatedLabel(System.currentTimeMillis());
+
 		// Now call the callback
 		pullToRefreshImpl();
 	}
@@ -282,9 +289,37 @@ public abstract class LoadingLayout extends FrameLayout implements ILoadingLayou
 
 	@Override
 	public void setLastUpdatedLabel(CharSequence label) {
+		// A static label replaces any relative time label
+		if (mLastUpdatedTime > 0) {
+			setLastUpdatedTime(0);
+		}
 		setSubHeaderText(label);
 	}
 
+	/**
+	 * Set the time of the last update. The Last Updated Text will then show
+	 * the time relative to now (e.g. "3 minutes ago"), and is kept up to date
+	 * while the View is visible. Calling
+	 * {@link #setLastUpdatedLabel(CharSequence)} replaces this.
+	 * 
+	 * @param time - Time of the last update, in ms. 0 to clear.
+	 */
+	public void setLastUpdatedTime(long time) {
+		mLastUpdatedTime = time;
+		mLastUpdatedMinutes = -1;
+
+		final LastUpdatedTicker ticker = LastUpdatedTicker.getInstance();
+		if (time > 0) {
+			if (null != getWindowToken()) {
+				ticker.register(this);
+			}
+			updateLastUpdatedLabel(System.currentTimeMillis());
+		} else {
+			ticker.unregister(this);
+			setSubHeaderText(null);
+		}
+	}
+
 	public final void setLoadingDrawable(Drawable imageDrawable) {
 		// Set Drawable
 		mHeaderImage.setImageDrawable(imageDrawable);
@@ -326,6 +361,39 @@ public abstract class LoadingLayout extends FrameLayout implements ILoadingLayou
 		}
 	}
 
+	/**
+	 * Called by {@link LastUpdatedTicker} to update the relative 'Last Updated'
+	 * label. The label is only touched when the number of elapsed minutes has
+	 * changed.
+	 * 
+	 * @param now - Current time, in ms
+	 */
+	final void updateLastUpdatedLabel(long now) {
+		if (mLastUpdatedTime <= 0) {
+			return;
+		}
+
+		final long elapsedMinutes = (now - mLastUpdatedTime) / DateUtils.MINUTE_IN_MILLIS;
+		if (elapsedMinutes != mLastUpdatedMinutes) {
+			mLastUpdatedMinutes = elapsedMinutes;
+			setSubHeaderText(LastUpdatedTicker.getInstance().getLabel(mLastUpdatedTime, now));
+		}
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (mLastUpdatedTime > 0) {
+			LastUpdatedTicker.getInstance().register(this);
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		LastUpdatedTicker.getInstance().unregister(this);
+	}
+
 	/**
 	 * Callbacks for derivative Layouts
 	 */
@@ -46,12 +46,22 @@ public class ViewCompat {
 		}
 	}
 
+	public static void setTranslationY(View view, float translationY) {
+		if (VERSION.SDK_INT >= VERSION_CODES.HONEYCOMB) {
+			SDK11.setTranslationY(view, translationY);
+		}
+	}
+
 	@TargetApi(11)
 	static class SDK11 {
 
 		public static void setLayerType(View view, int layerType) {
 			view.setLayerType(layerType, null);
 		}
+
+		public static void setTranslationY(View view, float translationY) {
+			view.setTranslationY(translationY);
+		}
 	}
 
 	@TargetApi(16)
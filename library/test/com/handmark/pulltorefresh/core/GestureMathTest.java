@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class GestureMathTest {
+
+	static final int TOUCH_SLOP = 8;
+
+	@Test
+	public void dragWithinTouchSlopIsIgnored() {
+		assertEquals(GestureMath.DRAG_NONE, GestureMath.getDragDirection(TOUCH_SLOP, 0, TOUCH_SLOP, true));
+		assertEquals(GestureMath.DRAG_NONE, GestureMath.getDragDirection(-TOUCH_SLOP, 0, TOUCH_SLOP, true));
+	}
+
+	@Test
+	public void dragPastTouchSlop() {
+		assertEquals(GestureMath.DRAG_START, GestureMath.getDragDirection(TOUCH_SLOP + 1, 0, TOUCH_SLOP, true));
+		assertEquals(GestureMath.DRAG_END, GestureMath.getDragDirection(-TOUCH_SLOP - 1, 0, TOUCH_SLOP, true));
+	}
+
+	@Test
+	public void mostlyOppositeDragIsFiltered() {
+		assertEquals(GestureMath.DRAG_NONE, GestureMath.getDragDirection(10, 20, TOUCH_SLOP, true));
+		assertEquals(GestureMath.DRAG_START, GestureMath.getDragDirection(10, 20, TOUCH_SLOP, false));
+	}
+
+	@Test
+	public void subPixelDragIsIgnored() {
+		assertEquals(GestureMath.DRAG_NONE, GestureMath.getDragDirection(0.5f, 0, 0, false));
+		assertEquals(GestureMath.DRAG_NONE, GestureMath.getDragDirection(-0.5f, 0, 0, false));
+	}
+
+	@Test
+	public void pullScrollFromStart() {
+		// Pulling down from the top gives a negative scroll, divided by friction
+		assertEquals(-50, GestureMath.computePullScroll(100, 200, false, GestureMath.DEFAULT_FRICTION));
+		// Pushing back past the start is clamped
+		assertEquals(0, GestureMath.computePullScroll(200, 100, false, GestureMath.DEFAULT_FRICTION));
+	}
+
+	@Test
+	public void pullScrollFromEnd() {
+		assertEquals(50, GestureMath.computePullScroll(200, 100, true, GestureMath.DEFAULT_FRICTION));
+		assertEquals(0, GestureMath.computePullScroll(100, 200, true, GestureMath.DEFAULT_FRICTION));
+	}
+
+	@Test
+	public void pullScale() {
+		assertEquals(0.5f, GestureMath.computePullScale(-50, 100), 0f);
+		assertEquals(0.5f, GestureMath.computePullScale(50, 100), 0f);
+		assertEquals(1.5f, GestureMath.computePullScale(-150, 100), 0f);
+	}
+
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class OverscrollMathTest {
+
+	static final int SCROLL_RANGE = 1000;
+	static final int FUZZY_THRESHOLD = 2;
+
+	@Test
+	public void overscrollPastStart() {
+		assertEquals(OverscrollMath.ACTION_OVERSCROLL_START,
+				OverscrollMath.resolveAction(-FUZZY_THRESHOLD - 1, SCROLL_RANGE, FUZZY_THRESHOLD));
+	}
+
+	@Test
+	public void overscrollPastEnd() {
+		assertEquals(OverscrollMath.ACTION_OVERSCROLL_END,
+				OverscrollMath.resolveAction(SCROLL_RANGE + FUZZY_THRESHOLD + 1, SCROLL_RANGE, FUZZY_THRESHOLD));
+	}
+
+	@Test
+	public void withinThresholdOfEdgeResets() {
+		assertEquals(OverscrollMath.ACTION_RESET, OverscrollMath.resolveAction(0, SCROLL_RANGE, FUZZY_THRESHOLD));
+		assertEquals(OverscrollMath.ACTION_RESET,
+				OverscrollMath.resolveAction(-FUZZY_THRESHOLD, SCROLL_RANGE, FUZZY_THRESHOLD));
+		assertEquals(OverscrollMath.ACTION_RESET,
+				OverscrollMath.resolveAction(SCROLL_RANGE + FUZZY_THRESHOLD, SCROLL_RANGE, FUZZY_THRESHOLD));
+	}
+
+	@Test
+	public void awayFromEdgesDoesNothing() {
+		assertEquals(OverscrollMath.ACTION_NONE,
+				OverscrollMath.resolveAction(SCROLL_RANGE / 2, SCROLL_RANGE, FUZZY_THRESHOLD));
+	}
+
+	@Test
+	public void startScroll() {
+		assertEquals(-15, OverscrollMath.computeStartScroll(1.5f, 0, -10));
+		assertEquals(-30, OverscrollMath.computeStartScroll(1.5f, -10, -10));
+	}
+
+	@Test
+	public void endScroll() {
+		assertEquals(15, OverscrollMath.computeEndScroll(1.5f, SCROLL_RANGE, 10, SCROLL_RANGE));
+		assertEquals(0, OverscrollMath.computeEndScroll(1.5f, SCROLL_RANGE, 0, SCROLL_RANGE));
+	}
+
+}
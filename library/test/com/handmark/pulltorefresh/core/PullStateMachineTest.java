@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PullStateMachineTest {
+
+	static final int ITEM_DIMENSION = 100;
+
+	@Test
+	public void refreshingStates() {
+		assertTrue(PullStateMachine.isRefreshing(PullStateMachine.STATE_REFRESHING));
+		assertTrue(PullStateMachine.isRefreshing(PullStateMachine.STATE_MANUAL_REFRESHING));
+		assertFalse(PullStateMachine.isRefreshing(PullStateMachine.STATE_RESET));
+		assertFalse(PullStateMachine.isRefreshing(PullStateMachine.STATE_RELEASE_TO_REFRESH));
+		assertFalse(PullStateMachine.isRefreshing(PullStateMachine.STATE_OVERSCROLLING));
+	}
+
+	@Test
+	public void pullStartsPullToRefresh() {
+		assertEquals(PullStateMachine.STATE_PULL_TO_REFRESH,
+				PullStateMachine.resolvePullState(PullStateMachine.STATE_RESET, -10, ITEM_DIMENSION));
+	}
+
+	@Test
+	public void pullPastItemIsReleaseToRefresh() {
+		assertEquals(PullStateMachine.STATE_PULL_TO_REFRESH, PullStateMachine.resolvePullState(
+				PullStateMachine.STATE_PULL_TO_REFRESH, -ITEM_DIMENSION, ITEM_DIMENSION));
+		assertEquals(PullStateMachine.STATE_RELEASE_TO_REFRESH, PullStateMachine.resolvePullState(
+				PullStateMachine.STATE_PULL_TO_REFRESH, -ITEM_DIMENSION - 1, ITEM_DIMENSION));
+		assertEquals(PullStateMachine.STATE_RELEASE_TO_REFRESH, PullStateMachine.resolvePullState(
+				PullStateMachine.STATE_PULL_TO_REFRESH, ITEM_DIMENSION + 1, ITEM_DIMENSION));
+	}
+
+	@Test
+	public void pullingBackIsPullToRefresh() {
+		assertEquals(PullStateMachine.STATE_PULL_TO_REFRESH, PullStateMachine.resolvePullState(
+				PullStateMachine.STATE_RELEASE_TO_REFRESH, -ITEM_DIMENSION, ITEM_DIMENSION));
+		assertEquals(PullStateMachine.STATE_RELEASE_TO_REFRESH, PullStateMachine.resolvePullState(
+				PullStateMachine.STATE_RELEASE_TO_REFRESH, -ITEM_DIMENSION - 1, ITEM_DIMENSION));
+	}
+
+	@Test
+	public void noScrollKeepsState() {
+		assertEquals(PullStateMachine.STATE_RESET,
+				PullStateMachine.resolvePullState(PullStateMachine.STATE_RESET, 0, ITEM_DIMENSION));
+	}
+
+	@Test
+	public void refreshingIgnoresPull() {
+		assertEquals(PullStateMachine.STATE_REFRESHING, PullStateMachine.resolvePullState(
+				PullStateMachine.STATE_REFRESHING, -ITEM_DIMENSION * 2, ITEM_DIMENSION));
+		assertEquals(PullStateMachine.STATE_MANUAL_REFRESHING,
+				PullStateMachine.resolvePullState(PullStateMachine.STATE_MANUAL_REFRESHING, -10, ITEM_DIMENSION));
+	}
+
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SmoothScrollMathTest {
+
+	static final long DURATION_MS = 200;
+
+	@Test
+	public void normalizedTime() {
+		assertEquals(0, SmoothScrollMath.computeNormalizedTime(0, DURATION_MS));
+		assertEquals(500, SmoothScrollMath.computeNormalizedTime(DURATION_MS / 2, DURATION_MS));
+		assertEquals(SmoothScrollMath.NORMALIZED_TIME_MAX, SmoothScrollMath.computeNormalizedTime(DURATION_MS, DURATION_MS));
+	}
+
+	@Test
+	public void normalizedTimeIsClamped() {
+		assertEquals(0, SmoothScrollMath.computeNormalizedTime(-10, DURATION_MS));
+		assertEquals(SmoothScrollMath.NORMALIZED_TIME_MAX,
+				SmoothScrollMath.computeNormalizedTime(DURATION_MS * 2, DURATION_MS));
+	}
+
+	@Test
+	public void interpolatorInput() {
+		assertEquals(0f, SmoothScrollMath.toInterpolatorInput(0), 0f);
+		assertEquals(0.25f, SmoothScrollMath.toInterpolatorInput(250), 0f);
+		assertEquals(1f, SmoothScrollMath.toInterpolatorInput(SmoothScrollMath.NORMALIZED_TIME_MAX), 0f);
+	}
+
+	@Test
+	public void scrollValue() {
+		assertEquals(-100, SmoothScrollMath.computeScrollValue(-100, 0, 0f));
+		assertEquals(-50, SmoothScrollMath.computeScrollValue(-100, 0, 0.5f));
+		assertEquals(0, SmoothScrollMath.computeScrollValue(-100, 0, 1f));
+		assertEquals(150, SmoothScrollMath.computeScrollValue(100, 200, 0.5f));
+	}
+
+}
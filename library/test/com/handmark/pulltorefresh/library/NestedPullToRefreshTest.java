@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup.LayoutParams;
+import android.widget.ScrollView;
+
+import com.handmark.pulltorefresh.library.PullToRefreshBase.Mode;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.OnRefreshListener;
+
+/**
+ * Pulls on a PullToRefreshScrollView nested within another, and checks which
+ * of them starts refreshing.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18)
+public class NestedPullToRefreshTest {
+
+	static final int WIDTH = 480;
+	static final int HEIGHT = 800;
+	static final int INNER_HEIGHT = 400;
+
+	static final int MOVE_COUNT = 40;
+	static final int MOVE_DISTANCE = 10;
+
+	private Activity mActivity;
+	private PullToRefreshScrollView mOuter;
+	private PullToRefreshScrollView mInner;
+
+	@Before
+	public void setUp() {
+		mActivity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+
+		mInner = new PullToRefreshScrollView(mActivity);
+		mInner.getRefreshableView().addView(new View(mActivity),
+				new LayoutParams(LayoutParams.MATCH_PARENT, INNER_HEIGHT / 2));
+		mInner.setOnRefreshListener(new NoOpRefreshListener());
+
+		mOuter = new PullToRefreshScrollView(mActivity);
+		mOuter.addView(mInner, new ScrollView.LayoutParams(LayoutParams.MATCH_PARENT, INNER_HEIGHT));
+		mOuter.setOnRefreshListener(new NoOpRefreshListener());
+
+		mActivity.setContentView(mOuter);
+		mOuter.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+		mOuter.layout(0, 0, WIDTH, HEIGHT);
+	}
+
+	@Test
+	public void innerPullsFromSharedEdge() {
+		mOuter.setMode(Mode.PULL_FROM_START);
+		mInner.setMode(Mode.PULL_FROM_START);
+
+		pull(MOVE_DISTANCE);
+
+		assertTrue(mInner.isRefreshing());
+		assertFalse(mOuter.isRefreshing());
+	}
+
+	@Test
+	public void outerPullsFromEdgeInnerDoesNotUse() {
+		mOuter.setMode(Mode.PULL_FROM_END);
+		mInner.setMode(Mode.PULL_FROM_START);
+
+		pull(-MOVE_DISTANCE);
+
+		assertTrue(mOuter.isRefreshing());
+		assertFalse(mInner.isRefreshing());
+	}
+
+	@Test
+	public void outerPullsFromOtherEdgeWhenBoth() {
+		mOuter.setMode(Mode.BOTH);
+		mInner.setMode(Mode.PULL_FROM_START);
+
+		pull(-MOVE_DISTANCE);
+
+		assertTrue(mOuter.isRefreshing());
+		assertFalse(mInner.isRefreshing());
+	}
+
+	/**
+	 * Drags from the middle of the inner View, by <var>distance</var> per MOVE
+	 */
+	private void pull(int distance) {
+		final long downTime = SystemClock.uptimeMillis();
+		final float x = WIDTH / 2;
+		float y = INNER_HEIGHT / 2;
+
+		dispatch(downTime, MotionEvent.ACTION_DOWN, x, y);
+		for (int i = 0; i < MOVE_COUNT; i++) {
+			y += distance;
+			dispatch(downTime, MotionEvent.ACTION_MOVE, x, y);
+		}
+		dispatch(downTime, MotionEvent.ACTION_UP, x, y);
+	}
+
+	private void dispatch(long downTime, int action, float x, float y) {
+		final MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), action, x, y, 0);
+		mOuter.dispatchTouchEvent(event);
+		event.recycle();
+	}
+
+	static class NoOpRefreshListener implements OnRefreshListener<ScrollView> {
+		@Override
+		public void onRefresh(PullToRefreshBase<ScrollView> refreshView) {
+			// Leave it refreshing
+		}
+	}
+
+}
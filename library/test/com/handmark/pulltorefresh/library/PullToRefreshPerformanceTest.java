@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.MeasureSpec;
+
+import com.handmark.pulltorefresh.library.PullToRefreshBase.OnRefreshListener;
+
+/**
+ * Runs a pull on each of the PullToRefresh Views, and checks that the work
+ * done per MOVE event stays within budget. Allocations aren't checked, as
+ * they can't be counted on the JVM.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18)
+public class PullToRefreshPerformanceTest {
+
+	static final int WIDTH = 480;
+	static final int HEIGHT = 800;
+
+	static final int MOVE_COUNT = 40;
+	static final int MOVE_DISTANCE = 10;
+
+	static final float MAX_HEADER_SCROLLS_PER_MOVE = 1f;
+	static final float MAX_REQUEST_LAYOUTS_PER_MOVE = 0.25f;
+	static final float MAX_INVALIDATES_PER_MOVE = 4f;
+
+	private Activity mActivity;
+
+	@Before
+	public void setUp() {
+		mActivity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+	}
+
+	@Test
+	public void listView() {
+		assertPullWithinBudget(new PullToRefreshListView(mActivity));
+	}
+
+	@Test
+	public void gridView() {
+		assertPullWithinBudget(new PullToRefreshGridView(mActivity));
+	}
+
+	@Test
+	public void expandableListView() {
+		assertPullWithinBudget(new PullToRefreshExpandableListView(mActivity));
+	}
+
+	@Test
+	public void scrollView() {
+		assertPullWithinBudget(new PullToRefreshScrollView(mActivity));
+	}
+
+	@Test
+	public void horizontalScrollView() {
+		assertPullWithinBudget(new PullToRefreshHorizontalScrollView(mActivity));
+	}
+
+	@Test
+	public void webView() {
+		assertPullWithinBudget(new PullToRefreshWebView(mActivity));
+	}
+
+	private <T extends View> void assertPullWithinBudget(PullToRefreshBase<T> refreshView) {
+		refreshView.setOnRefreshListener(new OnRefreshListener<T>() {
+			@Override
+			public void onRefresh(PullToRefreshBase<T> refreshView) {
+				// Leave it refreshing
+			}
+		});
+
+		mActivity.setContentView(refreshView);
+		refreshView.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+		refreshView.layout(0, 0, WIDTH, HEIGHT);
+
+		final PerformanceCounters counters = new PerformanceCounters();
+		refreshView.setPerformanceCounters(counters);
+
+		final boolean horizontal = refreshView.getPullToRefreshScrollDirection() == PullToRefreshBase.Orientation.HORIZONTAL;
+		final long downTime = SystemClock.uptimeMillis();
+		float x = WIDTH / 4;
+		float y = HEIGHT / 4;
+
+		dispatch(refreshView, downTime, MotionEvent.ACTION_DOWN, x, y);
+		for (int i = 0; i < MOVE_COUNT; i++) {
+			if (horizontal) {
+				x += MOVE_DISTANCE;
+			} else {
+				y += MOVE_DISTANCE;
+			}
+			dispatch(refreshView, downTime, MotionEvent.ACTION_MOVE, x, y);
+
+			// Apply the MOVE now, rather than on the next frame
+			refreshView.flushPendingPullEvent();
+		}
+
+		// Only count the MOVEs, not the start of the refresh
+		final String message = refreshView.getClass().getSimpleName() + ": " + counters;
+		assertEquals(message, MOVE_COUNT, counters.getMoveEvents());
+		assertTrue(message, counters.getHeaderScrollsPerMove() <= MAX_HEADER_SCROLLS_PER_MOVE);
+		assertTrue(message, counters.getRequestLayoutsPerMove() <= MAX_REQUEST_LAYOUTS_PER_MOVE);
+		assertTrue(message, counters.getInvalidatesPerMove() <= MAX_INVALIDATES_PER_MOVE);
+
+		dispatch(refreshView, downTime, MotionEvent.ACTION_UP, x, y);
+		assertTrue(message, refreshView.isRefreshing());
+
+		refreshView.onRefreshComplete();
+	}
+
+	private static void dispatch(View view, long downTime, int action, float x, float y) {
+		final MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), action, x, y, 0);
+		view.dispatchTouchEvent(event);
+		event.recycle();
+	}
+
+}
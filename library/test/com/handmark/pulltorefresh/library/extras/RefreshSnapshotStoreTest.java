@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.library.extras;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import com.handmark.pulltorefresh.library.PullToRefreshBase.State;
+import com.handmark.pulltorefresh.library.PullToRefreshListView;
+import com.handmark.pulltorefresh.library.extras.RefreshSnapshotStore.Codec;
+import com.handmark.pulltorefresh.library.extras.RefreshSnapshotStore.OnSnapshotRestoredListener;
+import com.handmark.pulltorefresh.library.extras.RefreshSnapshotStore.Snapshot;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18)
+public class RefreshSnapshotStoreTest {
+
+	@Rule
+	public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+	private File mFile;
+	private RefreshSnapshotStore<FeedItem> mStore;
+
+	@Before
+	public void setUp() {
+		mFile = new File(mTempFolder.getRoot(), "snapshot.bin");
+		mStore = new RefreshSnapshotStore<FeedItem>(mFile, new FeedItemCodec());
+	}
+
+	@Test
+	public void readWithoutSnapshotReturnsNull() {
+		assertFalse(mStore.hasSnapshot());
+		assertNull(mStore.read());
+	}
+
+	@Test
+	public void writeThenRead() {
+		final List<FeedItem> items = FeedSource.fetch(50);
+		assertTrue(mStore.write(items));
+		assertFalse(new File(mFile.getPath() + RefreshSnapshotStore.TEMP_SUFFIX).exists());
+
+		final Snapshot<FeedItem> snapshot = mStore.read();
+		assertEquals(items, snapshot.getItems());
+		assertTrue(snapshot.getTimestamp() > 0);
+	}
+
+	@Test
+	public void writeReplacesSnapshot() {
+		mStore.write(FeedSource.fetch(50));
+		mStore.write(FeedSource.fetch(3));
+		assertEquals(FeedSource.fetch(3), mStore.read().getItems());
+	}
+
+	@Test
+	public void truncatedSnapshotReturnsNull() throws IOException {
+		mStore.write(FeedSource.fetch(50));
+		truncate(mFile.length() / 2);
+		assertNull(mStore.read());
+	}
+
+	@Test
+	public void corruptItemCountReturnsNull() throws IOException {
+		mStore.write(FeedSource.fetch(1));
+		// Item count is the last int of the header
+		writeInt(RefreshSnapshotStore.HEADER_SIZE - 4, Integer.MAX_VALUE);
+		assertNull(mStore.read());
+
+		writeInt(RefreshSnapshotStore.HEADER_SIZE - 4, -5);
+		assertNull(mStore.read());
+	}
+
+	@Test
+	public void corruptStringLengthReturnsNull() throws IOException {
+		mStore.write(FeedSource.fetch(1));
+		// Item starts with its id, then the title's length
+		writeInt(RefreshSnapshotStore.HEADER_SIZE + 4, Integer.MAX_VALUE);
+		assertNull(mStore.read());
+
+		writeInt(RefreshSnapshotStore.HEADER_SIZE + 4, -5);
+		assertNull(mStore.read());
+	}
+
+	@Test
+	public void restoreShowsItemsAndRevalidates() {
+		mStore.write(FeedSource.fetch(10));
+
+		final List<FeedItem> restored = new ArrayList<FeedItem>();
+		final PullToRefreshListView refreshView = new PullToRefreshListView(Robolectric.application);
+
+		assertTrue(mStore.restore(refreshView, new OnSnapshotRestoredListener<FeedItem>() {
+			@Override
+			public void onSnapshotRestored(List<FeedItem> items, long timestamp) {
+				restored.addAll(items);
+			}
+		}));
+		assertEquals(FeedSource.fetch(10), restored);
+		assertEquals(State.MANUAL_REFRESHING, refreshView.getState());
+	}
+
+	@Test
+	public void restoreWithoutSnapshotDoesNothing() {
+		final PullToRefreshListView refreshView = new PullToRefreshListView(Robolectric.application);
+		assertFalse(mStore.restore(refreshView, null));
+		assertEquals(State.RESET, refreshView.getState());
+	}
+
+	private void truncate(long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void writeInt(long position, int value) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+		try {
+			raf.seek(position);
+			raf.writeInt(value);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Stand-in for the network data source which a refresh would use.
+	 */
+	static final class FeedSource {
+		static List<FeedItem> fetch(int count) {
+			final List<FeedItem> items = new ArrayList<FeedItem>(count);
+			for (int i = 0; i < count; i++) {
+				items.add(new FeedItem(i, "Item " + i, i % 3 == 0 ? null : "Body of item " + i));
+			}
+			return items;
+		}
+	}
+
+	static final class FeedItem {
+		final int mId;
+		final String mTitle;
+		final String mBody;
+
+		FeedItem(int id, String title, String body) {
+			mId = id;
+			mTitle = title;
+			mBody = body;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof FeedItem)) {
+				return false;
+			}
+			FeedItem other = (FeedItem) o;
+			return mId == other.mId && equal(mTitle, other.mTitle) && equal(mBody, other.mBody);
+		}
+
+		@Override
+		public int hashCode() {
+			return mId;
+		}
+
+		private static boolean equal(String a, String b) {
+			return null == a ? null == b : a.equals(b);
+		}
+	}
+
+	static final class FeedItemCodec implements Codec<FeedItem> {
+		@Override
+		public void write(FeedItem item, DataOutputStream out) throws IOException {
+			out.writeInt(item.mId);
+			RefreshSnapshotStore.writeString(out, item.mTitle);
+			RefreshSnapshotStore.writeString(out, item.mBody);
+		}
+
+		@Override
+		public FeedItem read(ByteBuffer in) {
+			return new FeedItem(in.getInt(), RefreshSnapshotStore.readString(in), RefreshSnapshotStore.readString(in));
+		}
+	}
+
+}
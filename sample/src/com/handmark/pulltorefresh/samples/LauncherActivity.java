@@ -25,7 +25,8 @@ import android.widget.ListView;
 public class LauncherActivity extends ListActivity {
 
 	public static final String[] options = { "ListView", "ExpandableListView", "GridView", "WebView", "ScrollView",
-			"Horizontal ScrollView", "ViewPager", "ListView Fragment", "WebView Advanced", "ListView in ViewPager" };
+			"Horizontal ScrollView", "ViewPager", "ListView Fragment", "WebView Advanced", "ListView in ViewPager",
+			"Stress Test" };
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -69,6 +70,9 @@ public class LauncherActivity extends ListActivity {
 			case 9:
 				intent = new Intent(this, PullToRefreshListInViewPagerActivity.class);
 				break;
+			case 10:
+				intent = new Intent(this, PullToRefreshStressActivity.class);
+				break;
 		}
 
 		startActivity(intent);
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.samples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Records the MotionEvents sent to a View, including all pointers and
+ * historical samples, so that they can be replayed with
+ * {@link MotionEventReplayer}. Events should be passed to
+ * {@link #record(MotionEvent)} in window coordinates (i.e. from
+ * <code>Activity.dispatchTouchEvent()</code>), and are stored relative to the
+ * target View.
+ * <p/>
+ * The recording is written in a compact binary format:
+ * 
+ * <pre>
+ * int magic, short version, int eventCount
+ * for each event:
+ *   short action, byte pointerCount, short sampleCount, byte[pointerCount] pointerIds
+ *   for each sample (historical samples first):
+ *     int timeMs, float[pointerCount * 2] x/y
+ * </pre>
+ * 
+ * Times are in milliseconds since the first recorded event.
+ */
+public final class MotionEventRecorder {
+
+	static final int MAGIC = 0x5054524d; // 'PTRM'
+	static final int VERSION = 1;
+
+	private final View mTargetView;
+	private final int[] mTargetLocation = new int[2];
+
+	private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream();
+	private final DataOutputStream mOutput = new DataOutputStream(mBuffer);
+
+	private boolean mRecording;
+	private int mEventCount;
+	private long mStartTime;
+
+	public MotionEventRecorder(View targetView) {
+		mTargetView = targetView;
+	}
+
+	/**
+	 * Start a new recording, discarding anything previously recorded. The first
+	 * event recorded will be the next ACTION_DOWN.
+	 */
+	public void start() {
+		mBuffer.reset();
+		mEventCount = 0;
+		mRecording = true;
+	}
+
+	public void stop() {
+		mRecording = false;
+	}
+
+	public boolean isRecording() {
+		return mRecording;
+	}
+
+	public int getEventCount() {
+		return mEventCount;
+	}
+
+	/**
+	 * @param event - MotionEvent in window coordinates
+	 */
+	public void record(MotionEvent event) {
+		if (!mRecording) {
+			return;
+		}
+
+		final int action = event.getAction();
+		if (mEventCount == 0) {
+			// Always start from the beginning of a gesture
+			if ((action & MotionEvent.ACTION_MASK) != MotionEvent.ACTION_DOWN) {
+				return;
+			}
+			mStartTime = event.getEventTime();
+			mTargetView.getLocationInWindow(mTargetLocation);
+		}
+
+		final int pointerCount = event.getPointerCount();
+		final int historySize = event.getHistorySize();
+		final float offsetX = -mTargetLocation[0], offsetY = -mTargetLocation[1];
+
+		try {
+			mOutput.writeShort(action);
+			mOutput.writeByte(pointerCount);
+			mOutput.writeShort(historySize + 1);
+			for (int p = 0; p < pointerCount; p++) {
+				mOutput.writeByte(event.getPointerId(p));
+			}
+
+			for (int h = 0; h < historySize; h++) {
+				mOutput.writeInt((int) (event.getHistoricalEventTime(h) - mStartTime));
+				for (int p = 0; p < pointerCount; p++) {
+					mOutput.writeFloat(event.getHistoricalX(p, h) + offsetX);
+					mOutput.writeFloat(event.getHistoricalY(p, h) + offsetY);
+				}
+			}
+
+			mOutput.writeInt((int) (event.getEventTime() - mStartTime));
+			for (int p = 0; p < pointerCount; p++) {
+				mOutput.writeFloat(event.getX(p) + offsetX);
+				mOutput.writeFloat(event.getY(p) + offsetY);
+			}
+		} catch (IOException e) {
+			// Can't happen with a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+
+		mEventCount++;
+	}
+
+	/**
+	 * Write the recording to <var>out</var>. The stream is not closed.
+	 * 
+	 * @param out - Stream to write to
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(MAGIC);
+		dataOut.writeShort(VERSION);
+		dataOut.writeInt(mEventCount);
+		mBuffer.writeTo(dataOut);
+		dataOut.flush();
+	}
+
+}
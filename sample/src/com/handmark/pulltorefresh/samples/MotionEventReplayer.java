@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.samples;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import android.annotation.TargetApi;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.MotionEvent.PointerCoords;
+
+import com.handmark.pulltorefresh.library.PerformanceCounters;
+import com.handmark.pulltorefresh.library.PullToRefreshBase;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.State;
+
+/**
+ * Replays a recording made by {@link MotionEventRecorder} against any
+ * {@link PullToRefreshBase} View, measuring the thread CPU time taken to
+ * dispatch each event (which covers <code>onInterceptTouchEvent()</code> and
+ * <code>onTouchEvent()</code>). On Jelly Bean and above the View applies MOVE
+ * events once per frame, so while replaying, the View's
+ * {@link PerformanceCounters} are set to apply them straight away, so that
+ * the work is included in each event's time.
+ * <p/>
+ * The events are dispatched back-to-back, with their timestamps taken from
+ * the recording (a virtual clock), rather than waiting for the recorded
+ * intervals. This makes a replay reproducible, and quick enough to repeat
+ * many times. All of the MotionEvents are created before each iteration starts,
+ * so that creating them isn't measured.
+ * <p/>
+ * Between iterations, any refresh started by the gesture is completed, and
+ * the next iteration waits until the View has scrolled back and reset, so
+ * that every iteration measures the same (pull) path.
+ */
+@TargetApi(9)
+public final class MotionEventReplayer {
+
+	private final RecordedEvent[] mEvents;
+
+	/**
+	 * Reads a recording. The stream is not closed.
+	 * 
+	 * @param in - Stream to read the recording from
+	 * @throws IOException if the stream isn't a valid recording
+	 */
+	public MotionEventReplayer(InputStream in) throws IOException {
+		DataInputStream dataIn = new DataInputStream(in);
+		if (dataIn.readInt() != MotionEventRecorder.MAGIC) {
+			throw new IOException("Not a MotionEvent recording");
+		}
+		final int version = dataIn.readShort();
+		if (version != MotionEventRecorder.VERSION) {
+			throw new IOException("Unsupported recording version: " + version);
+		}
+
+		mEvents = new RecordedEvent[dataIn.readInt()];
+		for (int i = 0; i < mEvents.length; i++) {
+			mEvents[i] = RecordedEvent.read(dataIn);
+		}
+	}
+
+	public int getEventCount() {
+		return mEvents.length;
+	}
+
+	/**
+	 * Replay the recording <var>iterations</var> times. Must be called from
+	 * the UI thread, once <var>refreshView</var> has been laid out. Each
+	 * iteration is dispatched in one go, but the replay finishes
+	 * asynchronously, as the View is allowed to reset between iterations.
+	 * <p/>
+	 * The View's OnRefreshListener is still called when the gesture releases,
+	 * so you may want to replace it with one which does nothing while
+	 * replaying.
+	 * 
+	 * @param refreshView - View to replay against
+	 * @param iterations - Number of times to replay the recording
+	 * @param listener - Called on the UI thread with the CPU time for each
+	 *            event dispatched
+	 */
+	public void replay(final PullToRefreshBase<?> refreshView, final int iterations,
+			final OnReplayFinishedListener listener) {
+		final int eventCount = mEvents.length;
+		final long[] cpuTimes = new long[eventCount * iterations];
+		final MotionEvent[] motionEvents = new MotionEvent[eventCount];
+
+		int maxPointerCount = 0;
+		for (RecordedEvent event : mEvents) {
+			maxPointerCount = Math.max(maxPointerCount, event.mPointerIds.length);
+		}
+		final PointerCoords[] coords = new PointerCoords[maxPointerCount];
+		for (int i = 0; i < coords.length; i++) {
+			coords[i] = new PointerCoords();
+		}
+
+		// Have each MOVE applied as it is dispatched, rather than on the next
+		// frame, keeping any counters the View already has
+		final PerformanceCounters previousCounters = refreshView.getPerformanceCounters();
+		final PerformanceCounters counters = null != previousCounters ? previousCounters : new PerformanceCounters();
+		final boolean wasImmediate = counters.isImmediatePullEventsEnabled();
+		counters.setImmediatePullEventsEnabled(true);
+		refreshView.setPerformanceCounters(counters);
+
+		refreshView.post(new Runnable() {
+			private int mIteration = 0;
+
+			@Override
+			public void run() {
+				if (!isReset(refreshView)) {
+					// Wait for the View to scroll back
+					refreshView.post(this);
+					return;
+				}
+
+				replayIteration(refreshView, motionEvents, coords, cpuTimes, mIteration * eventCount);
+
+				// Complete any refresh the gesture started, ready for the next
+				if (refreshView.isRefreshing()) {
+					refreshView.onRefreshComplete();
+				}
+
+				if (++mIteration < iterations) {
+					refreshView.post(this);
+				} else {
+					counters.setImmediatePullEventsEnabled(wasImmediate);
+					refreshView.setPerformanceCounters(previousCounters);
+					listener.onReplayFinished(new Result(cpuTimes));
+				}
+			}
+		});
+	}
+
+	private void replayIteration(PullToRefreshBase<?> refreshView, MotionEvent[] motionEvents,
+			PointerCoords[] coords, long[] cpuTimes, int offset) {
+		final int eventCount = mEvents.length;
+
+		// Create this iteration's events
+		final long clock = SystemClock.uptimeMillis();
+		long downTime = clock;
+		for (int i = 0; i < eventCount; i++) {
+			final RecordedEvent event = mEvents[i];
+			if ((event.mAction & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_DOWN) {
+				downTime = clock + event.mSampleTimes[0];
+			}
+			motionEvents[i] = event.toMotionEvent(clock, downTime, coords);
+		}
+
+		for (int i = 0; i < eventCount; i++) {
+			final long start = threadCpuTimeNanos();
+			refreshView.dispatchTouchEvent(motionEvents[i]);
+			cpuTimes[offset + i] = threadCpuTimeNanos() - start;
+
+			motionEvents[i].recycle();
+			motionEvents[i] = null;
+		}
+	}
+
+	private static boolean isReset(PullToRefreshBase<?> refreshView) {
+		return refreshView.getState() == State.RESET && refreshView.getScrollX() == 0
+				&& refreshView.getScrollY() == 0;
+	}
+
+	private static long threadCpuTimeNanos() {
+		final long time = Debug.threadCpuTimeNanos();
+		// Returns -1 if the platform doesn't support it
+		return time != -1 ? time : System.nanoTime();
+	}
+
+	/**
+	 * Called once a replay has finished.
+	 */
+	public static interface OnReplayFinishedListener {
+
+		public void onReplayFinished(Result result);
+
+	}
+
+	/**
+	 * The CPU time taken to dispatch each replayed event.
+	 */
+	public static final class Result {
+
+		private final long[] mCpuTimes;
+		private final long[] mSortedCpuTimes;
+
+		Result(long[] cpuTimes) {
+			mCpuTimes = cpuTimes;
+			mSortedCpuTimes = cpuTimes.clone();
+			Arrays.sort(mSortedCpuTimes);
+		}
+
+		/**
+		 * @return CPU time of each dispatched event, in nanoseconds, in the
+		 *         order they were dispatched
+		 */
+		public long[] getCpuTimes() {
+			return mCpuTimes;
+		}
+
+		public long getTotalCpuTime() {
+			long total = 0;
+			for (long time : mCpuTimes) {
+				total += time;
+			}
+			return total;
+		}
+
+		/**
+		 * @param percentile - Between 0 and 100
+		 * @return CPU time, in nanoseconds, at the given percentile
+		 */
+		public long getPercentile(int percentile) {
+			if (mSortedCpuTimes.length == 0) {
+				return 0;
+			}
+			final int index = Math.min(mSortedCpuTimes.length - 1, mSortedCpuTimes.length * percentile / 100);
+			return mSortedCpuTimes[index];
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d events, total: %dus, median: %dus, 90%%: %dus, max: %dus", mCpuTimes.length,
+					getTotalCpuTime() / 1000, getPercentile(50) / 1000, getPercentile(90) / 1000,
+					getPercentile(100) / 1000);
+		}
+	}
+
+	static final class RecordedEvent {
+		final int mAction;
+		final int[] mPointerIds;
+		final int[] mSampleTimes;
+		final float[] mCoords;
+
+		private RecordedEvent(int action, int[] pointerIds, int[] sampleTimes, float[] coords) {
+			mAction = action;
+			mPointerIds = pointerIds;
+			mSampleTimes = sampleTimes;
+			mCoords = coords;
+		}
+
+		static RecordedEvent read(DataInputStream in) throws IOException {
+			final int action = in.readShort() & 0xffff;
+			final int pointerCount = in.readUnsignedByte();
+			final int sampleCount = in.readShort() & 0xffff;
+
+			final int[] pointerIds = new int[pointerCount];
+			for (int p = 0; p < pointerCount; p++) {
+				pointerIds[p] = in.readUnsignedByte();
+			}
+
+			final int[] sampleTimes = new int[sampleCount];
+			final float[] coords = new float[sampleCount * pointerCount * 2];
+			for (int s = 0, c = 0; s < sampleCount; s++) {
+				sampleTimes[s] = in.readInt();
+				for (int p = 0; p < pointerCount * 2; p++) {
+					coords[c++] = in.readFloat();
+				}
+			}
+
+			return new RecordedEvent(action, pointerIds, sampleTimes, coords);
+		}
+
+		MotionEvent toMotionEvent(long clock, long downTime, PointerCoords[] coords) {
+			final int pointerCount = mPointerIds.length;
+
+			// The first sample creates the event, the rest are added as a batch
+			fillCoords(0, coords);
+			MotionEvent event = MotionEvent.obtain(downTime, clock + mSampleTimes[0], mAction, pointerCount,
+					mPointerIds, coords, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+
+			for (int s = 1; s < mSampleTimes.length; s++) {
+				fillCoords(s, coords);
+				event.addBatch(clock + mSampleTimes[s], coords, 0);
+			}
+			return event;
+		}
+
+		private void fillCoords(int sample, PointerCoords[] coords) {
+			final int pointerCount = mPointerIds.length;
+			for (int p = 0, c = sample * pointerCount * 2; p < pointerCount; p++) {
+				coords[p].x = mCoords[c++];
+				coords[p].y = mCoords[c++];
+				coords[p].pressure = 1f;
+				coords[p].size = 1f;
+			}
+		}
+	}
+
+}
@@ -15,17 +15,25 @@
  *******************************************************************************/
 package com.handmark.pulltorefresh.samples;
 
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.LinkedList;
 
 import android.app.ListActivity;
 import android.os.AsyncTask;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.text.format.DateUtils;
+import android.util.Log;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.View;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.ArrayAdapter;
@@ -39,6 +47,7 @@ import com.handmark.pulltorefresh.library.PullToRefreshBase.OnRefreshListener;
 import com.handmark.pulltorefresh.library.PullToRefreshBase.State;
 import com.handmark.pulltorefresh.library.PullToRefreshListView;
 import com.handmark.pulltorefresh.library.extras.SoundPullEventListener;
+import com.handmark.pulltorefresh.samples.MotionEventReplayer.OnReplayFinishedListener;
 
 public final class PullToRefreshListActivity extends ListActivity {
 
@@ -46,10 +55,18 @@ public final class PullToRefreshListActivity extends ListActivity {
 	static final int MENU_DISABLE_SCROLL = 1;
 	static final int MENU_SET_MODE = 2;
 	static final int MENU_DEMO = 3;
+	static final int MENU_RECORD_GESTURE = 4;
+	static final int MENU_REPLAY_GESTURE = 5;
+
+	static final String LOG_TAG = "PullToRefreshListActivity";
+	static final String GESTURE_FILENAME = "ptr_list_gesture.bin";
+	static final int REPLAY_ITERATIONS = 20;
 
 	private LinkedList<String> mListItems;
 	private PullToRefreshListView mPullRefreshListView;
 	private ArrayAdapter<String> mAdapter;
+	private MotionEventRecorder mGestureRecorder;
+	private OnRefreshListener<ListView> mOnRefreshListener;
 
 	/** Called when the activity is first created. */
 	@Override
@@ -60,7 +77,7 @@ public final class PullToRefreshListActivity extends ListActivity {
 		mPullRefreshListView = (PullToRefreshListView) findViewById(R.id.pull_refresh_list);
 
 		// Set a listener to be invoked when the list should be refreshed.
-		mPullRefreshListView.setOnRefreshListener(new OnRefreshListener<ListView>() {
+		mOnRefreshListener = new OnRefreshListener<ListView>() {
 			@Override
 			public void onRefresh(PullToRefreshBase<ListView> refreshView) {
 				String label = DateUtils.formatDateTime(getApplicationContext(), System.currentTimeMillis(),
@@ -72,7 +89,8 @@ public final class PullToRefreshListActivity extends ListActivity {
 				// Do work to refresh the list here.
 				new GetDataTask().execute();
 			}
-		});
+		};
+		mPullRefreshListView.setOnRefreshListener(mOnRefreshListener);
 
 		// Add an end-of-list listener
 		mPullRefreshListView.setOnLastItemVisibleListener(new OnLastItemVisibleListener() {
@@ -93,6 +111,8 @@ public final class PullToRefreshListActivity extends ListActivity {
 
 		mAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, mListItems);
 
+		mGestureRecorder = new MotionEventRecorder(mPullRefreshListView);
+
 		/**
 		 * Add Sound Event Listener
 		 */
@@ -140,6 +160,11 @@ public final class PullToRefreshListActivity extends ListActivity {
 		menu.add(0, MENU_SET_MODE, 0, mPullRefreshListView.getMode() == Mode.BOTH ? "Change to MODE_PULL_DOWN"
 				: "Change to MODE_PULL_BOTH");
 		menu.add(0, MENU_DEMO, 0, "Demo");
+		// Replaying needs the Gingerbread MotionEvent APIs
+		if (VERSION.SDK_INT >= VERSION_CODES.GINGERBREAD) {
+			menu.add(0, MENU_RECORD_GESTURE, 0, "Record Gesture");
+			menu.add(0, MENU_REPLAY_GESTURE, 0, "Replay Gesture");
+		}
 		return super.onCreateOptionsMenu(menu);
 	}
 
@@ -167,6 +192,11 @@ public final class PullToRefreshListActivity extends ListActivity {
 		setModeItem.setTitle(mPullRefreshListView.getMode() == Mode.BOTH ? "Change to MODE_FROM_START"
 				: "Change to MODE_PULL_BOTH");
 
+		MenuItem recordItem = menu.findItem(MENU_RECORD_GESTURE);
+		if (null != recordItem) {
+			recordItem.setTitle(mGestureRecorder.isRecording() ? "Stop Recording Gesture" : "Record Gesture");
+		}
+
 		return super.onPrepareOptionsMenu(menu);
 	}
 
@@ -189,11 +219,82 @@ public final class PullToRefreshListActivity extends ListActivity {
 			case MENU_DEMO:
 				mPullRefreshListView.demo();
 				break;
+			case MENU_RECORD_GESTURE:
+				if (mGestureRecorder.isRecording()) {
+					stopRecordingGesture();
+				} else {
+					mGestureRecorder.start();
+				}
+				break;
+			case MENU_REPLAY_GESTURE:
+				replayGesture();
+				break;
 		}
 
 		return super.onOptionsItemSelected(item);
 	}
 
+	@Override
+	public boolean dispatchTouchEvent(MotionEvent ev) {
+		mGestureRecorder.record(ev);
+		return super.dispatchTouchEvent(ev);
+	}
+
+	private void stopRecordingGesture() {
+		mGestureRecorder.stop();
+
+		FileOutputStream out = null;
+		try {
+			out = openFileOutput(GESTURE_FILENAME, MODE_PRIVATE);
+			mGestureRecorder.writeTo(out);
+			Toast.makeText(this, "Recorded " + mGestureRecorder.getEventCount() + " events", Toast.LENGTH_SHORT)
+					.show();
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "Failed to save gesture", e);
+		} finally {
+			closeQuietly(out);
+		}
+	}
+
+	private void replayGesture() {
+		FileInputStream in = null;
+		try {
+			in = openFileInput(GESTURE_FILENAME);
+			MotionEventReplayer replayer = new MotionEventReplayer(in);
+
+			// Don't load any data while replaying, so each iteration is the same
+			mPullRefreshListView.setOnRefreshListener(new OnRefreshListener<ListView>() {
+				@Override
+				public void onRefresh(PullToRefreshBase<ListView> refreshView) {
+				}
+			});
+
+			replayer.replay(mPullRefreshListView, REPLAY_ITERATIONS, new OnReplayFinishedListener() {
+				@Override
+				public void onReplayFinished(MotionEventReplayer.Result result) {
+					mPullRefreshListView.setOnRefreshListener(mOnRefreshListener);
+
+					Log.i(LOG_TAG, "Gesture replay: " + result);
+					Toast.makeText(PullToRefreshListActivity.this, result.toString(), Toast.LENGTH_LONG).show();
+				}
+			});
+		} catch (IOException e) {
+			Toast.makeText(this, "Record a gesture first", Toast.LENGTH_SHORT).show();
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (null != closeable) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
 	private String[] mStrings = { "Abbaye de Belloc", "Abbaye du Mont des Cats", "Abertam", "Abondance", "Ackawi",
 			"Acorn", "Adelost", "Affidelice au Chablis", "Afuega'l Pitu", "Airag", "Airedale", "Aisy Cendre",
 			"Allgauer Emmentaler", "Abbaye de Belloc", "Abbaye du Mont des Cats", "Abertam", "Abondance", "Ackawi",
@@ -0,0 +1,592 @@
+/*******************************************************************************
+ * Copyright 2011, 2012 Chris Banes.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.handmark.pulltorefresh.samples;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import android.annotation.TargetApi;
+import android.app.ListActivity;
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.AsyncTask;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.handmark.pulltorefresh.library.PerformanceCounters;
+import com.handmark.pulltorefresh.library.PullToRefreshBase;
+import com.handmark.pulltorefresh.library.PullToRefreshBase.OnRefreshListener;
+import com.handmark.pulltorefresh.library.PullToRefreshListView;
+
+/**
+ * Stress test for measuring frame times. Shows a list of over 100,000 rows of
+ * mixed types, and continuously scrolls it and pulls it to refresh, by
+ * dispatching a synthetic pull gesture, so that the touch path is exercised.
+ * On Jelly Bean and above, a histogram of frame durations is recorded, and is
+ * appended to <code>ptr_stress_frames.csv</code> in the app's files directory
+ * (on a background thread) when the activity is paused.
+ */
+public final class PullToRefreshStressActivity extends ListActivity {
+
+	static final String LOG_TAG = "PullToRefreshStress";
+
+	static final int MENU_TOGGLE_CYCLES = 0;
+
+	static final int INITIAL_ROW_COUNT = 100000;
+	static final int ROWS_PER_REFRESH = 50;
+
+	static final int CYCLE_INTERVAL_MS = 1500;
+	static final int SCROLL_DISTANCE_ROWS = 200;
+	static final int REFRESH_LOAD_MS = 300;
+
+	static final int PULL_DISTANCE_DP = 250;
+	static final int PULL_MOVE_COUNT = 15;
+	static final int PULL_EVENT_INTERVAL_MS = 16;
+
+	static final String FRAMES_FILENAME = "ptr_stress_frames.csv";
+
+	private PullToRefreshListView mPullRefreshListView;
+	private StressAdapter mAdapter;
+	private PerformanceCounters mPerformanceCounters;
+
+	private final Handler mHandler = new Handler();
+	private final Random mRandom = new Random(0);
+	private boolean mCyclesRunning;
+	private int mCycle;
+
+	private FrameRecorder mFrameRecorder;
+	private PullGestureDriver mPullGestureDriver;
+
+	private final Runnable mCycleRunnable = new Runnable() {
+		@Override
+		public void run() {
+			runCycle();
+		}
+	};
+
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.activity_ptr_list);
+
+		mPullRefreshListView = (PullToRefreshListView) findViewById(R.id.pull_refresh_list);
+		mPullRefreshListView.setOnRefreshListener(new OnRefreshListener<ListView>() {
+			@Override
+			public void onRefresh(PullToRefreshBase<ListView> refreshView) {
+				new GetDataTask().execute();
+			}
+		});
+
+		mPerformanceCounters = new PerformanceCounters();
+		mPullRefreshListView.setPerformanceCounters(mPerformanceCounters);
+
+		mAdapter = new StressAdapter(this, new StressDataSource(INITIAL_ROW_COUNT));
+		mPullRefreshListView.getRefreshableView().setAdapter(mAdapter);
+
+		final float density = getResources().getDisplayMetrics().density;
+		mPullGestureDriver = new PullGestureDriver(mPullRefreshListView, mHandler, Math.round(PULL_DISTANCE_DP
+				* density));
+
+		if (VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN) {
+			mFrameRecorder = new FrameRecorder();
+		}
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+
+		if (null != mFrameRecorder) {
+			mFrameRecorder.start();
+		}
+		setCyclesRunning(true);
+	}
+
+	@Override
+	protected void onPause() {
+		super.onPause();
+
+		setCyclesRunning(false);
+		if (null != mFrameRecorder) {
+			mFrameRecorder.stop();
+			writeFrames();
+		}
+	}
+
+	@Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		menu.add(0, MENU_TOGGLE_CYCLES, 0, "Stop Cycles");
+		return super.onCreateOptionsMenu(menu);
+	}
+
+	@Override
+	public boolean onPrepareOptionsMenu(Menu menu) {
+		MenuItem toggleItem = menu.findItem(MENU_TOGGLE_CYCLES);
+		toggleItem.setTitle(mCyclesRunning ? "Stop Cycles" : "Start Cycles");
+		return super.onPrepareOptionsMenu(menu);
+	}
+
+	@Override
+	public boolean onOptionsItemSelected(MenuItem item) {
+		switch (item.getItemId()) {
+			case MENU_TOGGLE_CYCLES:
+				setCyclesRunning(!mCyclesRunning);
+				break;
+		}
+		return super.onOptionsItemSelected(item);
+	}
+
+	private void setCyclesRunning(boolean running) {
+		mCyclesRunning = running;
+		mHandler.removeCallbacks(mCycleRunnable);
+		if (!running) {
+			mPullGestureDriver.cancel();
+		}
+		if (running) {
+			mHandler.postDelayed(mCycleRunnable, CYCLE_INTERVAL_MS);
+		}
+	}
+
+	/**
+	 * Each cycle alternates between flinging to a random part of the list, and
+	 * scrolling back to the top and pulling to refresh.
+	 */
+	private void runCycle() {
+		final ListView listView = mPullRefreshListView.getRefreshableView();
+
+		if (mCycle++ % 2 == 0) {
+			final int position = mRandom.nextInt(mAdapter.getCount() - SCROLL_DISTANCE_ROWS);
+			listView.setSelection(position);
+			if (VERSION.SDK_INT >= VERSION_CODES.FROYO) {
+				listView.smoothScrollToPosition(position + SCROLL_DISTANCE_ROWS);
+			}
+		} else if (!mPullRefreshListView.isRefreshing()) {
+			listView.setSelection(0);
+			mPullGestureDriver.start();
+		}
+
+		if (mCyclesRunning) {
+			mHandler.postDelayed(mCycleRunnable, CYCLE_INTERVAL_MS);
+		}
+	}
+
+	/**
+	 * Takes a copy of the recorded frames and counters, and writes it on a
+	 * background thread, so that onPause() isn't blocked on the disk.
+	 */
+	private void writeFrames() {
+		final File file = new File(getFilesDir(), FRAMES_FILENAME);
+		final FrameRecorder.Report report = mFrameRecorder.createReport();
+		final String counters = mPerformanceCounters.toString();
+
+		mFrameRecorder.reset();
+		mPerformanceCounters.reset();
+
+		Toast.makeText(this, report.getDroppedFrames() + " dropped frames", Toast.LENGTH_SHORT).show();
+
+		new Thread(LOG_TAG + "-writer") {
+			@Override
+			public void run() {
+				PrintWriter writer = null;
+				try {
+					writer = new PrintWriter(new FileWriter(file, true));
+					report.writeTo(writer);
+					writer.println("# " + counters);
+
+					Log.i(LOG_TAG, "Wrote " + report.getFrameCount() + " frames (" + report.getDroppedFrames()
+							+ " dropped) to " + file);
+				} catch (IOException e) {
+					Log.e(LOG_TAG, "Failed to write frames", e);
+				} finally {
+					if (null != writer) {
+						writer.close();
+					}
+				}
+			}
+		}.start();
+	}
+
+	private class GetDataTask extends AsyncTask<Void, Void, Integer> {
+
+		@Override
+		protected Integer doInBackground(Void... params) {
+			// Simulates a short, local fetch
+			try {
+				Thread.sleep(REFRESH_LOAD_MS);
+			} catch (InterruptedException e) {
+			}
+			return ROWS_PER_REFRESH;
+		}
+
+		@Override
+		protected void onPostExecute(Integer result) {
+			mAdapter.prependRows(result);
+			mPullRefreshListView.onRefreshComplete();
+		}
+	}
+
+	/**
+	 * In-process data source. Rows are generated from their index, so a very
+	 * large list doesn't need a very large amount of memory.
+	 */
+	static final class StressDataSource {
+
+		static final int TYPE_SECTION = 0;
+		static final int TYPE_SINGLE_LINE = 1;
+		static final int TYPE_TWO_LINE = 2;
+		static final int TYPE_COUNT = 3;
+
+		static final int ROWS_PER_SECTION = 25;
+
+		private int mRowCount;
+		private int mPrependedRowCount;
+
+		StressDataSource(int rowCount) {
+			mRowCount = rowCount;
+		}
+
+		int getRowCount() {
+			return mRowCount;
+		}
+
+		void prependRows(int count) {
+			mRowCount += count;
+			mPrependedRowCount += count;
+		}
+
+		int getRowType(int position) {
+			final int id = getRowId(position);
+			if (id % ROWS_PER_SECTION == 0) {
+				return TYPE_SECTION;
+			}
+			return id % 3 == 0 ? TYPE_TWO_LINE : TYPE_SINGLE_LINE;
+		}
+
+		/**
+		 * @return A stable ID for the row, which doesn't change when rows are
+		 *         prepended.
+		 */
+		int getRowId(int position) {
+			return position - mPrependedRowCount;
+		}
+
+		String getTitle(int position) {
+			final int id = getRowId(position);
+			if (getRowType(position) == TYPE_SECTION) {
+				return "Section " + (id / ROWS_PER_SECTION);
+			}
+			return "Item " + id;
+		}
+
+		String getSubtitle(int position) {
+			return "Subtitle for item " + getRowId(position);
+		}
+	}
+
+	static final class StressAdapter extends BaseAdapter {
+
+		private final LayoutInflater mInflater;
+		private final StressDataSource mDataSource;
+
+		StressAdapter(Context context, StressDataSource dataSource) {
+			mInflater = LayoutInflater.from(context);
+			mDataSource = dataSource;
+		}
+
+		void prependRows(int count) {
+			mDataSource.prependRows(count);
+			notifyDataSetChanged();
+		}
+
+		@Override
+		public int getCount() {
+			return mDataSource.getRowCount();
+		}
+
+		@Override
+		public String getItem(int position) {
+			return mDataSource.getTitle(position);
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return mDataSource.getRowId(position);
+		}
+
+		@Override
+		public boolean hasStableIds() {
+			return true;
+		}
+
+		@Override
+		public int getViewTypeCount() {
+			return StressDataSource.TYPE_COUNT;
+		}
+
+		@Override
+		public int getItemViewType(int position) {
+			return mDataSource.getRowType(position);
+		}
+
+		@Override
+		public boolean isEnabled(int position) {
+			return getItemViewType(position) != StressDataSource.TYPE_SECTION;
+		}
+
+		@Override
+		public View getView(int position, View convertView, ViewGroup parent) {
+			final int type = getItemViewType(position);
+
+			if (null == convertView) {
+				switch (type) {
+					case StressDataSource.TYPE_TWO_LINE:
+						convertView = mInflater.inflate(android.R.layout.simple_list_item_2, parent, false);
+						break;
+					case StressDataSource.TYPE_SECTION:
+						convertView = mInflater.inflate(android.R.layout.simple_list_item_1, parent, false);
+						((TextView) convertView).setTypeface(Typeface.DEFAULT_BOLD);
+						break;
+					case StressDataSource.TYPE_SINGLE_LINE:
+					default:
+						convertView = mInflater.inflate(android.R.layout.simple_list_item_1, parent, false);
+						break;
+				}
+			}
+
+			((TextView) convertView.findViewById(android.R.id.text1)).setText(mDataSource.getTitle(position));
+			if (type == StressDataSource.TYPE_TWO_LINE) {
+				((TextView) convertView.findViewById(android.R.id.text2)).setText(mDataSource.getSubtitle(position));
+			}
+
+			return convertView;
+		}
+	}
+
+	/**
+	 * Dispatches a pull gesture to the View: a DOWN, then a MOVE every frame
+	 * until it has been pulled the given distance, then an UP.
+	 */
+	static final class PullGestureDriver implements Runnable {
+
+		private final PullToRefreshBase<?> mRefreshView;
+		private final Handler mHandler;
+		private final int mPullDistance;
+
+		private long mDownTime;
+		private int mStep;
+		private boolean mRunning;
+
+		PullGestureDriver(PullToRefreshBase<?> refreshView, Handler handler, int pullDistance) {
+			mRefreshView = refreshView;
+			mHandler = handler;
+			mPullDistance = pullDistance;
+		}
+
+		void start() {
+			if (!mRunning) {
+				mRunning = true;
+				mStep = 0;
+				// Give the list a frame to lay out at the top
+				mHandler.postDelayed(this, PULL_EVENT_INTERVAL_MS);
+			}
+		}
+
+		void cancel() {
+			if (mRunning) {
+				mHandler.removeCallbacks(this);
+				dispatch(MotionEvent.ACTION_CANCEL, mStep);
+				mRunning = false;
+			}
+		}
+
+		@Override
+		public void run() {
+			final int action;
+			if (mStep == 0) {
+				mDownTime = SystemClock.uptimeMillis();
+				action = MotionEvent.ACTION_DOWN;
+			} else if (mStep <= PULL_MOVE_COUNT) {
+				action = MotionEvent.ACTION_MOVE;
+			} else {
+				action = MotionEvent.ACTION_UP;
+			}
+
+			dispatch(action, mStep);
+
+			if (action == MotionEvent.ACTION_UP) {
+				mRunning = false;
+			} else {
+				mStep++;
+				mHandler.postDelayed(this, PULL_EVENT_INTERVAL_MS);
+			}
+		}
+
+		private void dispatch(int action, int step) {
+			final float x = mRefreshView.getWidth() / 2f;
+			final float y = mRefreshView.getHeight() / 4f + mPullDistance * Math.min(step, PULL_MOVE_COUNT)
+					/ (float) PULL_MOVE_COUNT;
+
+			final MotionEvent event = MotionEvent.obtain(mDownTime, SystemClock.uptimeMillis(), action, x, y, 0);
+			mRefreshView.dispatchTouchEvent(event);
+			event.recycle();
+		}
+	}
+
+	/**
+	 * Records a histogram of frame durations, using Choreographer.
+	 */
+	@TargetApi(16)
+	static final class FrameRecorder implements Choreographer.FrameCallback {
+
+		static final long FRAME_INTERVAL_NS = 1000000000L / 60;
+
+		/**
+		 * One bucket per millisecond. The last bucket also counts every
+		 * longer frame.
+		 */
+		static final int HISTOGRAM_BUCKETS = 250;
+		static final long NS_PER_MS = 1000000L;
+
+		private final int[] mHistogram = new int[HISTOGRAM_BUCKETS];
+		private int mFrameCount;
+		private int mDroppedFrames;
+		private long mMaxFrameDurationNs;
+
+		private long mLastFrameTimeNs;
+		private boolean mRunning;
+
+		void start() {
+			if (!mRunning) {
+				mRunning = true;
+				mLastFrameTimeNs = 0;
+				Choreographer.getInstance().postFrameCallback(this);
+			}
+		}
+
+		void stop() {
+			mRunning = false;
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+
+		void reset() {
+			for (int i = 0; i < mHistogram.length; i++) {
+				mHistogram[i] = 0;
+			}
+			mFrameCount = 0;
+			mDroppedFrames = 0;
+			mMaxFrameDurationNs = 0;
+		}
+
+		int getFrameCount() {
+			return mFrameCount;
+		}
+
+		int getDroppedFrames() {
+			return mDroppedFrames;
+		}
+
+		/**
+		 * @return A copy of the current counts, which can be written from
+		 *         another thread.
+		 */
+		Report createReport() {
+			return new Report(mHistogram.clone(), mFrameCount, mDroppedFrames, mMaxFrameDurationNs);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			if (!mRunning) {
+				return;
+			}
+
+			if (mLastFrameTimeNs != 0) {
+				final long duration = frameTimeNanos - mLastFrameTimeNs;
+				mHistogram[(int) Math.min(duration / NS_PER_MS, HISTOGRAM_BUCKETS - 1)]++;
+				mFrameCount++;
+				mMaxFrameDurationNs = Math.max(mMaxFrameDurationNs, duration);
+
+				// Frames missed between this one and the last
+				mDroppedFrames += Math.max(0, Math.round(duration / (float) FRAME_INTERVAL_NS) - 1);
+			}
+			mLastFrameTimeNs = frameTimeNanos;
+
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		static final class Report {
+
+			private final int[] mHistogram;
+			private final int mFrameCount;
+			private final int mDroppedFrames;
+			private final long mMaxFrameDurationNs;
+
+			Report(int[] histogram, int frameCount, int droppedFrames, long maxFrameDurationNs) {
+				mHistogram = histogram;
+				mFrameCount = frameCount;
+				mDroppedFrames = droppedFrames;
+				mMaxFrameDurationNs = maxFrameDurationNs;
+			}
+
+			int getFrameCount() {
+				return mFrameCount;
+			}
+
+			int getDroppedFrames() {
+				return mDroppedFrames;
+			}
+
+			/**
+			 * Writes one line per non-empty bucket: the frame duration in
+			 * whole milliseconds, and the number of frames which took that
+			 * long.
+			 */
+			void writeTo(PrintWriter writer) {
+				writer.println("# frames: " + mFrameCount + ", dropped: " + mDroppedFrames + ", max_ms: "
+						+ mMaxFrameDurationNs / (float) NS_PER_MS);
+				writer.println("duration_ms,frames");
+				for (int i = 0; i < mHistogram.length; i++) {
+					if (mHistogram[i] > 0) {
+						writer.print(i);
+						if (i == mHistogram.length - 1) {
+							writer.print('+');
+						}
+						writer.print(',');
+						writer.println(mHistogram[i]);
+					}
+				}
+			}
+		}
+	}
+
+}